@@ -13,6 +13,7 @@ import java.util.Map;
 import java.util.Set;
 
 import rns.utils.TNode;
+import rns.utils.WeightSumKernels;
 
 
 
@@ -26,6 +27,11 @@ public class Clustering {
 	double imbalance = 0.0;
 	long parentClusteringId;
 	int nbEditParent;
+	// the id of the node-to-cluster weight tables of the parent clustering and the nodes moved from it,
+	//	used to derive the tables of this clustering incrementally if they are still retained (see 'MyCGraph.retain()').
+	//	The id is -1 for a clustering without known parent
+	long parentGraphId = -1;
+	int[] movedNodeIds;
 	
 	public Clustering(int[] membership_, long id_){
 		id = id_;
@@ -103,6 +109,10 @@ public class Clustering {
 		return(this.imbalance);
 	}
 	
+	public void setImbalance(double imbalance_){
+		this.imbalance = imbalance_;
+	}
+	
 	public int getNbEditParent(){
 		return(nbEditParent);
 	}
@@ -121,6 +131,20 @@ public class Clustering {
 	}
 	
     
+	public long getParentGraphId(){
+		return(parentGraphId);
+	}
+	
+	public int[] getMovedNodeIds(){
+		return(movedNodeIds);
+	}
+	
+	public void setParentGraphId(long parentGraphId_, int[] movedNodeIds_){
+		parentGraphId = parentGraphId_;
+		movedNodeIds = movedNodeIds_;
+	}
+	
+    
 	public ArrayList<ArrayList<Integer>> getClustersInArrayFormat(){
     	ArrayList<ArrayList<Integer>> clusters = new ArrayList<ArrayList<Integer>>(nbCluster);
 		
@@ -229,34 +253,29 @@ public class Clustering {
 
 
 		double imbalance = 0.0;
-		ArrayList<ArrayList<Integer>> clusters = getClustersInArrayFormat();
-		// System.out.println(clusters);
+		// the nodes grouped by cluster: each cluster is a contiguous range of 'nodes', see 'WeightSumKernels.groupNodesByCluster()'
+		int[] clusterStarts = new int[nbCluster+1];
+		int[] nodes = WeightSumKernels.groupNodesByCluster(membership, nbCluster, clusterStarts);
 		// we know by construction that node ids in each cluster is sorted in ascending order
 		
 		// count the misplaced link weights inside the clusters
-		for(ArrayList<Integer> cluster : clusters){
-			for(Integer nodeId1 : cluster){
-				for(Integer nodeId2 : cluster){
-					if(nodeId1 < nodeId2){
-						if(adjMat[nodeId1][nodeId2]<0)
-							imbalance += -adjMat[nodeId1][nodeId2]; // since it is a negative weight, negate it instead of abs()
-					}
-				}
+		for(int c=0; c<nbCluster; c++){
+			for(int k=clusterStarts[c]; k<clusterStarts[c+1]; k++){
+				int nodeId1 = nodes[k];
+				// since it is a negative weight, negate it instead of abs()
+				imbalance = WeightSumKernels.addNegativeAbs(imbalance, adjMat[nodeId1], nodes, k+1, clusterStarts[c+1]);
 			}
 		}
 		
 		// count the misplaced link weights between the clusters
-		for(ArrayList<Integer> cluster1 : clusters){
-			for(ArrayList<Integer> cluster2 : clusters){
-				
-				if(cluster1.get(0) != cluster2.get(0)){ // if two arrays are identical, then the fist element should be the same
-					for(Integer nodeId1 : cluster1){
-						for(Integer nodeId2 : cluster2){
-							if(nodeId1 < nodeId2){
-								if(adjMat[nodeId1][nodeId2]>0)
-									imbalance += adjMat[nodeId1][nodeId2];
-							}
-						}
+		for(int c1=0; c1<nbCluster; c1++){
+			for(int c2=0; c2<nbCluster; c2++){
+				if(c1 != c2){
+					for(int k=clusterStarts[c1]; k<clusterStarts[c1+1]; k++){
+						int nodeId1 = nodes[k];
+						// only the nodes 'nodeId2' of the cluster c2 with nodeId1 < nodeId2
+						int from = WeightSumKernels.firstGreater(nodes, clusterStarts[c2], clusterStarts[c2+1], nodeId1);
+						imbalance = WeightSumKernels.addPositive(imbalance, adjMat[nodeId1], nodes, from, clusterStarts[c2+1]);
 					}
 				}
 			}
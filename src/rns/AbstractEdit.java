@@ -30,7 +30,7 @@ public abstract class AbstractEdit {
 	public AbstractEdit(double[][] adjMat_, Clustering initClustering_){
 		initClustering = initClustering_;
 		n = initClustering.n;
-		g = new MyCGraph(n, initClustering);
+		g = new MyCGraph(n, initClustering, n); // +n for new clusters
 		g.fillInNodeToWeightedDegreeSum(adjMat_);
 		//idCounter = idCounter_;
 		adjMat = adjMat_;
@@ -2,36 +2,81 @@ package rns;
 
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import myUtils.Clustering;
+import rns.utils.ClusteringFingerprintSet;
+import rns.utils.PruningFilterStatistics;
+import rns.utils.ThreadPerTaskExecutor;
 
 
 public class EnumerationBFS extends AbstractEnumeration {
 	
-	public Map<Integer, ArrayList<Clustering>> nextInitClusteringsByNbEditMap;
-	public Set<Clustering> nextInitClusterings;
 	public double tilim;
 	public double solLim;
 	public boolean isBruteForce;
 	public Map<Integer, ArrayList<String>> execTimesByNbEditMap;
-	public ArrayList<Integer> clusteringSizesByPass;
+	public ArrayList<Integer> clusteringSizesByPass; // the number of new clusterings by generation (i.e. distance to the initial clustering)
 	int NB_THREAD;
-	double remainingTime;
-	int pass;
+	// the threads running the exploration tasks and their fork/join subtasks (null in the single thread case and with virtual threads)
+	ForkJoinPool forkJoinPool;
+	// the statistics of the pruning filters, shared by all the enumerations on the graph (see 'MyGenericEnumeration.passesFilters()')
+	PruningFilterStatistics filterStatistics;
+	
+	// the executor of the exploration tasks, created once and reused by all the calls to 'enumerate()', and its queue of waiting tasks.
+	//	The queue is not bounded, since the tasks schedule their children themselves and would block the workers, but a waiting task
+	//	is lightweight: its clustering is kept in 'foundClusterings' anyway, and it holds only the id of the tables of its parent
+	//	(see 'MyCGraph.retain()'). The enumeration and its tables are created when the task starts, so at most NB_THREAD of them exist at once
+	Executor executor;
+	BlockingQueue<Runnable> taskQueue;
+	
+	// ============================
+	// state of the asynchronous frontier, see 'enumerate()'
+	volatile int runId = 0; // incremented at each call to 'enumerate()', so that a task of a previous call cannot change the current results
+	Set<Clustering> discoveredClusterings; // shared by all the tasks, accessed only when holding its lock
+	// the fingerprints of 'discoveredClusterings' and of the solutions just found by the tasks, checked and updated by the tasks without lock
+	ClusteringFingerprintSet discoveredFingerprints;
+	long deadline; // in milliseconds
+	boolean isStopped; // set when the time limit is reached, accessed only when holding the lock of 'discoveredClusterings'
+	int nbPendingTask; // the number of tasks scheduled and not finished yet, accessed only when holding the lock of 'this'
+	long taskCounter; // used to break ties between the tasks of the same edit distance and yield (first scheduled, first run)
+	// the first error thrown by a task (e.g. an OutOfMemoryError), which makes the results incomplete. Accessed only when holding the lock of 'this'
+	Throwable failure;
+	// the time given to the running tasks to return their partial results once the time limit is reached, in milliseconds
+	static long STOP_GRACE_PERIOD = 1000;
+	// added to the exploration times in the yields, so that a very short exploration does not get an infinite yield, in seconds
+	static double MIN_EXPLORE_TIME = 0.001;
+	// the number of solutions which can still be found before reaching 'solLim' (null if there is no limit), shared by the tasks.
+	//	A task consumes it for each new solution it finds (see 'MyGenericEnumeration.setSolutionBudget()')
+	AtomicLong solutionBudget;
+	// ============================
 	
 	
 	public EnumerationBFS(double[][] adjMat_, double tilim_, int solLim_, int NB_THREAD_, int maxNbEdit_, boolean isBruteForce_)
+	{
+		this(adjMat_, tilim_, solLim_, NB_THREAD_, maxNbEdit_, isBruteForce_, false);
+	}
+	
+	
+	/**
+	 * @param useVirtualThreads_: if true, each exploration task runs in its own thread, a virtual thread when the runtime supports them 
+	 * 		(see 'ThreadPerTaskExecutor'), with at most 'NB_THREAD_' tasks running at once, and its enumeration is not split into subtasks.
+	 * 		Otherwise, the tasks and their subtasks run in a fork/join pool of 'NB_THREAD_' threads.
+	 * 		In both cases, the waiting tasks are started in the order of their priority (see 'ExplorationTask').
+	 */
+	public EnumerationBFS(double[][] adjMat_, double tilim_, int solLim_, int NB_THREAD_, int maxNbEdit_, boolean isBruteForce_,
+			boolean useVirtualThreads_)
 	{
 		super(adjMat_, maxNbEdit_);
-		pass = 0;
 		idCounter++;
 		tilim = tilim_;
 		solLim = solLim_;
@@ -43,11 +88,18 @@ public class EnumerationBFS extends AbstractEnumeration {
 		clusteringSizesByPass = new ArrayList<Integer>();
 		
 		NB_THREAD = NB_THREAD_;
-		
-		nextInitClusterings = new HashSet<Clustering>();
-		nextInitClusteringsByNbEditMap = new HashMap<Integer, ArrayList<Clustering>>();
-		for(int i=1; i<=this.maxNbEdit; i++)
-			this.nextInitClusteringsByNbEditMap.put(i, new ArrayList<Clustering>());
+		taskQueue = new PriorityBlockingQueue<Runnable>();
+		// At most NB_THREAD threads run the CPU-bound work: the tasks run either in the workers of the fork/join pool, along with
+		//	their subtasks, or each in its own thread without subtasks
+		if(useVirtualThreads_)
+			executor = new ThreadPerTaskExecutor(taskQueue, NB_THREAD, true);
+		else if(NB_THREAD > 1){
+			forkJoinPool = new ForkJoinPool(NB_THREAD);
+			executor = new ThreadPerTaskExecutor(taskQueue, NB_THREAD, forkJoinPool);
+		}
+		else
+			executor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, taskQueue, ThreadPerTaskExecutor::newDaemonThread);
+		filterStatistics = new PruningFilterStatistics(this.maxNbEdit);
 	}
 	
 	
@@ -55,7 +107,6 @@ public class EnumerationBFS extends AbstractEnumeration {
 		this.idCounter = 0;
 		this.execTime = 0.0;
 		this.outDirPath="";
-		pass = 0;
 		
 		this.execTimesByNbEditMap.clear();
 		for(int nbEdit=1; nbEdit<=this.maxNbEdit; nbEdit++)
@@ -63,18 +114,103 @@ public class EnumerationBFS extends AbstractEnumeration {
 		
 		this.clusteringSizesByPass.clear();
 		this.initClustering = null;
-		this.nextInitClusterings.clear();
 		this.foundClusterings.clear();
+		this.filterStatistics = new PruningFilterStatistics(this.maxNbEdit);
+	}
+	
+	
+	
+	// A clustering of the frontier, along with the highest edit distance already explored from it
+	static class FrontierEntry {
+		Clustering c;
+		int generation; // 0 for the initial clustering, and the generation of the parent + 1 otherwise
+		int exploredNbEdit = 0;
+		// the new solutions found from this clustering per second, predicted from its parent until it is explored
+		double yield;
+		int nbFoundSolution = 0;
+		double exploreTime = 0.0; // in seconds
+		
+		FrontierEntry(Clustering c_, int generation_, double yield_){
+			c = c_;
+			generation = generation_;
+			yield = yield_;
+		}
 		
-		this.nextInitClusteringsByNbEditMap.clear();
-		for(int nbEdit=1; nbEdit<=this.maxNbEdit; nbEdit++)
-			this.nextInitClusteringsByNbEditMap.put(nbEdit, new ArrayList<Clustering>());
+		// It records the results of an exploration of the clustering, and updates its yield accordingly
+		void addExploration(int nbNewSolution, double time){
+			nbFoundSolution += nbNewSolution;
+			exploreTime += time;
+			yield = nbFoundSolution/(exploreTime+MIN_EXPLORE_TIME);
+		}
 	}
 	
 	
 	
-	// for each init optimal solution, we apply 1-Edit, 2-Edit, 3-Edit, etc. in order.
-	// If any new optimal clustering is found, we finish the cycle, and restart again
+	// The exploration of a clustering of the frontier with a given edit distance.
+	//	The tasks with the smallest edit distance are run first, since they are the cheapest ones.
+	//	Among them, the clusterings with the highest yield are run first: a clustering whose exploration (or the one of its parent)
+	//	has found many solutions quickly lies likely in a region with many optimal solutions (e.g. a plateau of 1-edit moves).
+	//	So, when the enumeration is stopped by 'solLim' or 'tilim', more solutions are obtained in the same time.
+	//	This order is shared with the workers of the distributed enumeration (see 'ShardWorker')
+	static abstract class FrontierTask implements Runnable, Comparable<FrontierTask> {
+		FrontierEntry entry;
+		int nbEdit;
+		double yield; // the yield of the entry when the task is scheduled (the one of the entry may change in the meantime)
+		long seq;
+		
+		FrontierTask(FrontierEntry entry_, int nbEdit_, long seq_){
+			entry = entry_;
+			nbEdit = nbEdit_;
+			yield = entry_.yield;
+			seq = seq_;
+		}
+		
+		@Override
+		public int compareTo(FrontierTask o){
+			if(nbEdit != o.nbEdit)
+				return(Integer.compare(nbEdit, o.nbEdit));
+			if(yield != o.yield)
+				return(Double.compare(o.yield, yield)); // the highest yield first
+			return(Long.compare(seq, o.seq));
+		}
+	}
+	
+	
+	class ExplorationTask extends FrontierTask {
+		int run;
+		
+		ExplorationTask(FrontierEntry entry_, int nbEdit_, long seq_, int run_){
+			super(entry_, nbEdit_, seq_);
+			run = run_;
+		}
+		
+		@Override
+		public void run(){
+			try {
+				explore(entry, nbEdit, run);
+			} catch (Throwable e) { // an error too, since the enumeration cannot be complete without this task
+				System.out.println("Exception is caught in the exploration of the clustering " + entry.c.getId() + " with nbEdit=" + nbEdit);
+				e.printStackTrace();
+				fail(run, e);
+			} finally {
+				finishTask(run);
+			}
+		}
+	}
+	
+	
+	
+	/**
+	 * For each optimal solution, we apply 1-Edit, 2-Edit, 3-Edit, etc. in order. Any newly discovered solution is explored in the same way. 
+	 * 
+	 * Instead of running passes in lockstep (i.e. waiting for the exploration of all the clusterings of a pass before starting the next pass), 
+	 *   the frontier is asynchronous: each new solution is scheduled for exploration as soon as it is accepted, 
+	 *   and a clustering is scheduled for the next edit distance as soon as its exploration with the current one is finished.
+	 *   The pending tasks are prioritized by edit distance, so the cheap edit operations are performed first, as in the passes,
+	 *   then by yield (see 'ExplorationTask').
+	 *   Then, the threads stay busy until the frontier is empty, whatever the time spent on a single clustering.
+	 *   The set of solutions obtained is the same, since every solution is explored with all the edit distances up to 'maxNbEdit'.
+	 */
 	public void enumerate(Clustering initClustering, String passOutputDirPath, Set<Clustering> discoveredClusterings){
 		
 		initClustering.setId(idCounter);
@@ -84,50 +220,54 @@ public class EnumerationBFS extends AbstractEnumeration {
 		outDirPath = passOutputDirPath;
 		System.out.println("--- "+outDirPath);
 		
+		long startTime = System.currentTimeMillis();
 		if(tilim > 0)
-			remainingTime = tilim;
+			deadline = startTime + (long) (tilim*1000);
 		else
-			remainingTime = Double.MAX_VALUE;
-		
-		//foundClusterings.clear();
-		
-		for(int nbEdit=1; nbEdit<=this.maxNbEdit; nbEdit++)
-			this.nextInitClusteringsByNbEditMap.get(nbEdit).add(this.initClustering);
+			deadline = Long.MAX_VALUE;
+		
+		ClusteringFingerprintSet fingerprints = new ClusteringFingerprintSet();
+		fingerprints.addAll(discoveredClusterings);
+		fingerprints.add(this.initClustering);
+		synchronized(this){
+			this.discoveredClusterings = discoveredClusterings;
+			this.discoveredFingerprints = fingerprints;
+			runId++;
+			isStopped = false;
+			nbPendingTask = 0;
+			taskCounter = 0;
+			failure = null;
+		}
 		foundClusterings.add(this.initClustering);
 		discoveredClusterings.add(this.initClustering);
-		clusteringSizesByPass.add(nextInitClusterings.size());
+		clusteringSizesByPass.add(1);
+		solutionBudget = (this.solLim>=0) ? new AtomicLong((long) this.solLim - foundClusterings.size()) : null;
 		
 		// ====================================================================================
 		
-		int nbEdit = 1;
-		//while(nbEdit<=this.maxNbEdit){
-		while(nbEdit<=this.maxNbEdit && remainingTime>0 && (this.solLim<0 || foundClusterings.size()<this.solLim)){
-			System.out.println("=========================");
-			System.out.println("nbEdit: "+nbEdit);
-			System.out.println("=========================");
-			
-			nextInitClusterings.addAll(this.nextInitClusteringsByNbEditMap.get(nbEdit));
-			this.nextInitClusteringsByNbEditMap.get(nbEdit).clear();
-			
-			enumerateHelper(nbEdit, nbEdit, passOutputDirPath, discoveredClusterings); // it loads new clusterings into 'nextInitClusterings'
-			
-			if(nextInitClusterings.size()==0){
-				if(nbEdit == this.maxNbEdit)
-					break;
-				else
-					nbEdit++;
-			}
-			else if(nextInitClusterings.size()>0){
-				for(int nbEdit_=1; nbEdit_<=this.maxNbEdit; nbEdit_++)
-					this.nextInitClusteringsByNbEditMap.get(nbEdit_).addAll(nextInitClusterings);
-				nextInitClusterings.clear();
-				
-				if(nbEdit!=1)
-					nbEdit=1;
-			}
+		schedule(new FrontierEntry(this.initClustering, 0, 0.0), 1, runId);
+		
+		// wait until the frontier is empty or the time limit is reached
+		awaitNoPendingTask(deadline);
+		// The queued tasks are cancelled. The running ones check the deadline in the enumeration loops (see 'MyGenericEnumeration.setDeadline()'),
+		//	so they stop shortly and their partial results are kept
+		List<Runnable> cancelledTasks = new ArrayList<>();
+		taskQueue.drainTo(cancelledTasks);
+		synchronized(this){
+			nbPendingTask -= cancelledTasks.size();
+		}
+		awaitNoPendingTask(System.currentTimeMillis() + STOP_GRACE_PERIOD);
+		synchronized(discoveredClusterings){
+			isStopped = true; // the results of the tasks still running are discarded
 		}
+		synchronized(this){
+			if(failure != null) // the solutions found so far are not written, since they may be mistaken for the complete set
+				throw new IllegalStateException("The enumeration failed in an exploration task", failure);
+		}
+		
 		// ====================================================================================
 		
+		execTime = (float) (System.currentTimeMillis()-startTime)/1000;
 		System.out.println("Final size: " + foundClusterings.size());
 		System.out.println("execution time: " + execTime + "s");
 		
@@ -135,246 +275,186 @@ public class EnumerationBFS extends AbstractEnumeration {
 		writeCommonStatisticsIntoFiles(outDirPath);
 		writeStatisticsIntoFiles(outDirPath);
 	}
-		
-		
-		
-	// for each init optimal solution, we apply 1-Edit, 2-Edit, 3-Edit, etc. in order.
-	// If any new optimal clustering is found, we finish the cycle, and restart again
-	public void enumerateHelper(int minNbEdit, int maxNbEdit, String passOutputDirPath, Set<Clustering> discoveredClusterings){
-		
-//		while(remainingTime>0 && nextInitClusterings.size()>0 && (this.solLim<0 || foundClusterings.size()<this.solLim)){
-			pass++;
-			System.out.println("pass: "+pass);
-//			if(pass==2)
-//				break;
-			
-			double enumTime = 0;
-			long startTime = System.currentTimeMillis();
-
-			Set<Clustering> currInitClusterings = new HashSet<Clustering>();
-			currInitClusterings.addAll(nextInitClusterings);
-			nextInitClusterings.clear();
-
-			// sequential version, we put it here just in case // TODO there is a bug ...... USE ONLY FOR DEBUG
-			//processSeqCurrInitClusteringsWithoutTimeLimit(currInitClusterings, minNbEdit, maxNbEdit, -1, discoveredClusterings);
-			
-			// ========================================================================================
-//////			int timeoutThreads = 10; // 10 seconds => arbitrary
-			ArrayList<MyGenericEnumeration> threads;
-			if(tilim > 0)
-				threads = processParallelCurrInitClusteringsWithTimeLimit(
-						currInitClusterings, minNbEdit, maxNbEdit, NB_THREAD, (long) remainingTime, pass);
-			else
-				threads = processParallelCurrInitClusteringsWithoutTimeLimit(
-						currInitClusterings, minNbEdit, maxNbEdit, NB_THREAD, pass);
-				
-		    //Set<Clustering> currFoundClusterings = new HashSet<>();
-	        for (int i=0; i<threads.size(); i++) 
-	        {
-	        	MyGenericEnumeration myEnum = threads.get(i);
-	        	Set<Clustering> currFoundClusterings = myEnum.foundClusterings;
-				Set<Clustering> subset = keepUndiscoveredClusterings(currFoundClusterings, discoveredClusterings);
-				for(Clustering c1 : subset){ 
-					c1.computeImbalance(adjMat); 
-					// id should be handled here, since we cannot generate only non-visited clusterings in BFS
-					//	so, we need to check if a clustering is already visited or not
-					c1.setId(idCounter++); 
-					System.out.println("nb edit parent: " + c1.getNbEditParent());
-				}
-				nextInitClusterings.addAll(subset);
-				foundClusterings.addAll(nextInitClusterings);
-                discoveredClusterings.addAll(nextInitClusterings);
-				
-				// ======
-				
-				for(int nbEdit=minNbEdit;nbEdit<=maxNbEdit;nbEdit++){
-					String desc = "solId:"+myEnum.initClustering.getId()+",time:"+myEnum.execTimesByNbEdit[nbEdit-1];
-					execTimesByNbEditMap.get(nbEdit).add(desc);
-				}
-	        }
-	        // ========================================================================================
-	        clusteringSizesByPass.add(nextInitClusterings.size());
-			//System.out.println("Current size: " + foundClusterings.size());
-			
-	        
-	        enumTime = (float) (System.currentTimeMillis()-startTime)/1000;
-	        execTime += enumTime;
-			if(tilim > 0) { // if time limit is provided by user
-				remainingTime = tilim-enumTime;
-				System.out.println("22remainingTime: " + remainingTime + "s");
-			}
-    		System.out.println("Final size (during the passes): " + foundClusterings.size());
-//		} // end of pass
-		
+	
+	
+	
+	// It schedules the exploration of 'entry' with 'nbEdit', unless the enumeration is over (time limit or solution limit).
+	//	After the time limit, the tasks still running return their partial results, but nothing new is scheduled
+	void schedule(FrontierEntry entry, int nbEdit, int run){
+		synchronized(discoveredClusterings){
+			if(isStopped || System.currentTimeMillis() >= deadline || (this.solLim>=0 && foundClusterings.size()>=this.solLim))
+				return;
+		}
+		ExplorationTask task;
+		synchronized(this){
+			if(run != runId)
+				return;
+			nbPendingTask++;
+			taskCounter++;
+			task = new ExplorationTask(entry, nbEdit, taskCounter, runId);
+		}
+		executor.execute(task);
+	}
+	
+	
+	// It records the error of a task, and wakes up 'enumerate()' so that it stops the enumeration
+	synchronized void fail(int run, Throwable e){
+		if(run != runId || failure != null)
+			return;
+		failure = e;
+		notifyAll();
 	}
 	
 	
+	synchronized void finishTask(int run){
+		if(run != runId) // a task of a previous call to 'enumerate()'
+			return;
+		nbPendingTask--;
+		if(nbPendingTask == 0)
+			notifyAll();
+	}
 	
 	
-	public void processSeqCurrInitClusteringsWithoutTimeLimit(Set<Clustering> currInitClusterings, int minNbEdit, int maxNbEdit, int pass, Set<Clustering> discoveredClusterings)
-	{
-		int initCounter = 0;
-		for(Clustering initClustering : currInitClusterings){
-			initCounter++;
-//			System.out.println("-------------------------");
-//			System.out.println("initCounter:"+initCounter+" of " + currInitClusterings.size());
-//			System.out.println("Current foundClusterings size: " + foundClusterings.size());
-//			System.out.println(initClustering);
-//			System.out.println("!!!!!!!!! nb edit parent:" + initClustering.getNbEditParent());
-//			Iterator<Clustering> it = foundClusterings.iterator();
-//			System.out.println("parent clustering id: "+initClustering.getParentClusteringId());
-//			while(it.hasNext()){
-//				Clustering p = it.next();
-//				if(p.getId() == initClustering.getParentClusteringId()){
-//					System.out.println("parent");
-//					System.out.println(p);
-//					break;
-//				}
-//			}
-
-			MyGenericEnumeration edit = new MyGenericEnumeration(minNbEdit, maxNbEdit, adjMat, initClustering, pass, isBruteForce);
-			edit.enumerate();
-			Set<Clustering> currFoundClusterings = edit.foundClusterings;
-			
-			System.out.println("-------------------------");
-			for(Clustering c1 : currFoundClusterings){
-				c1.computeImbalance(adjMat); //System.out.println(c1);
-				c1.setId(idCounter++); 
-//				System.out.println("!!!!!!!!! nb edit parent:" + c1.getNbEditParent());
-//				System.out.println(c1);
+	// It blocks until there is no pending task, a task fails or the time 'limit' (in milliseconds) is reached
+	synchronized void awaitNoPendingTask(long limit){
+		long now = System.currentTimeMillis();
+		while(nbPendingTask > 0 && failure == null && now < limit){
+			try {
+				wait(Math.min(limit-now, Integer.MAX_VALUE));
+			} catch (InterruptedException e) {
+				e.printStackTrace();
+				break;
 			}
-//			System.out.println("current size: " + currFoundClusterings.size());
-			
-			Set<Clustering> subset = keepUndiscoveredClusterings(currFoundClusterings, discoveredClusterings);
-			//System.out.println("current final size: " + subset.size());
-
-			// for(Clustering c1 : subset){ c1.computeImbalance(adjMat); System.out.println(c1); }
-			nextInitClusterings.addAll(subset);
-			foundClusterings.addAll(nextInitClusterings);
-			System.out.println("final size: " + foundClusterings.size());
+			now = System.currentTimeMillis();
 		}
-		
 	}
 	
 	
 	
-	public ArrayList<MyGenericEnumeration> processParallelCurrInitClusteringsWithTimeLimit(
-			Set<Clustering> currInitClusterings, int minNbEdit, int maxNbEdit, int NB_THREAD, long timeoutThreads, int pass)
-	{
-		ExecutorService executor = Executors.newFixedThreadPool(NB_THREAD);
-		ArrayList<MyGenericEnumeration> threads = new ArrayList<MyGenericEnumeration>();
-		List<Callable<MyGenericEnumeration>> callables = new ArrayList<>();
-		
-		int initCounter = 0;
-		for(Clustering initClustering : currInitClusterings){
-			initCounter++;
-//			System.out.println("-------------------------");
-//			System.out.println("nb thread: " + NB_THREAD);
-//			System.out.println("now :"+initCounter+" of " + currInitClusterings.size());
-//			System.out.println("Current size: " + foundClusterings.size());
+	// It applies the d-edit operations with d='nbEdit' to the clustering of 'entry', 
+	//	then schedules the new solutions and the next edit distance of 'entry'
+	void explore(FrontierEntry entry, int nbEdit, int run){
+		if(nbEdit == 1 && !isBruteForce){
+			explorePlateau(entry, run);
+			return;
+		}
+		
+		MyGenericEnumeration myEnum;
+		synchronized(this){
+			if(run != runId)
+				return;
+			myEnum = new MyGenericEnumeration(nbEdit, nbEdit, adjMat, entry.c, entry.generation+1, isBruteForce);
+			myEnum.setDeadline(deadline);
+			myEnum.setSolutionBudget(solutionBudget);
+			myEnum.setDiscoveredFingerprints(discoveredFingerprints);
+		}
+		myEnum.setForkJoinPool(forkJoinPool);
+		myEnum.setFilterStatistics(filterStatistics);
+		myEnum.enumerate();
+		
+		Set<Clustering> subset;
+		synchronized(discoveredClusterings){
+			if(isStopped || run != runId)
+				return;
+			
+			// the solutions found by 'myEnum' are new, since they are checked against 'discoveredFingerprints' as soon as they are found
+			subset = myEnum.foundClusterings;
+			for(Clustering c1 : subset){ 
+				// the imbalance is already known from the parent clustering, see 'MyGenericEnumeration.enumerateClusterings()'
+				// id should be handled here, since we cannot generate only non-visited clusterings in BFS
+				//	so, we need to check if a clustering is already visited or not
+				c1.setId(idCounter++); 
+				System.out.println("nb edit parent: " + c1.getNbEditParent());
+			}
+			foundClusterings.addAll(subset);
+			discoveredClusterings.addAll(subset);
 			
-			MyGenericEnumeration e = new MyGenericEnumeration(minNbEdit, maxNbEdit, adjMat, initClustering, pass, isBruteForce);
-			threads.add(e);
-	    	//executor.execute(e);
+			// ======
 			
-			Callable<MyGenericEnumeration> task = () -> {
-				e.enumerate();
-				return e;
-			};
-			callables.add(task);
-		} // end of initClustering
-		
-		try {
-			// source1: https://stackoverflow.com/questions/2758612/executorservice-that-interrupts-tasks-after-a-timeout
-			// source2: https://gkemayo.developpez.com/tutoriels/java/introduction-java-8-concurrency/
-			// source3: https://www.baeldung.com/java-runnable-callable
+			entry.exploredNbEdit = nbEdit;
+			entry.addExploration(subset.size(), myEnum.execTimesByNbEdit[nbEdit-1]);
+			String desc = "solId:"+entry.c.getId()+",time:"+myEnum.execTimesByNbEdit[nbEdit-1];
+			execTimesByNbEditMap.get(nbEdit).add(desc);
 			
-			// whatever the size, timeout is 'timeoutThreads' seconds for the totality of all these tasks
-			System.out.println("tilim: "+ timeoutThreads);
-			executor.invokeAll(callables, timeoutThreads*1000, TimeUnit.MILLISECONDS); 
-		} catch (InterruptedException e1) {
-			// TODO Auto-generated catch block
-			e1.printStackTrace();
+			if(subset.size()>0){
+				while(clusteringSizesByPass.size() <= entry.generation+1)
+					clusteringSizesByPass.add(0);
+				clusteringSizesByPass.set(entry.generation+1, clusteringSizesByPass.get(entry.generation+1)+subset.size());
+	    		System.out.println("Final size (during the enumeration): " + foundClusterings.size());
+			}
 		}
 		
-		//Tear Down
-	    executor.shutdown();
-
-	    //Wait for all threads to finish
-	    while (!executor.isTerminated())
-	    {
-	        //wait for infinity time
-	    }
-	    System.out.println("Finished threads with time limit!!");	
-	    
-	    return(threads);
-	} 
-	
+		for(Clustering c1 : subset)
+			schedule(new FrontierEntry(c1, entry.generation+1, entry.yield), 1, run); // the yield of a new solution is predicted from its parent
+		
+		if(entry.exploredNbEdit < this.maxNbEdit)
+			schedule(entry, entry.exploredNbEdit+1, run);
+	}
 	
 	
 	
-	public ArrayList<MyGenericEnumeration> processParallelCurrInitClusteringsWithoutTimeLimit(
-			Set<Clustering> currInitClusterings, int minNbEdit, int maxNbEdit, int NB_THREAD, int pass)
-	{
-		ExecutorService executor = Executors.newFixedThreadPool(NB_THREAD);
-		ArrayList<MyGenericEnumeration> threads = new ArrayList<MyGenericEnumeration>();
-		
-		int initCounter = 0;
-		for(Clustering initClustering : currInitClusterings){
-			initCounter++;
-//			System.out.println("-------------------------");
-//			System.out.println("nb thread: " + NB_THREAD);
-//			System.out.println("now :"+initCounter+" of " + currInitClusterings.size());
-//			System.out.println("Current size: " + foundClusterings.size());
-//			System.out.println("maxNbEdit: " + maxNbEdit);
-
-			MyGenericEnumeration e = new MyGenericEnumeration(minNbEdit, maxNbEdit, adjMat, initClustering, pass, isBruteForce);
-			threads.add(e);
-	    	executor.execute(e);
-
-		} // end of initClustering
-
+	// It applies the 1-edit operations to the clustering of 'entry' and to all the new solutions obtained in this way (see 'OneEditPlateauEnumeration').
+	//	Since the 1-edit operations of these solutions are already applied, they are scheduled directly with the next edit distance,
+	//	as soon as they are found (see 'addPlateauClusterings()'): so, the other threads explore them while the traversal goes on
+	void explorePlateau(FrontierEntry entry, int run){
+		OneEditPlateauEnumeration plateauEnum = new OneEditPlateauEnumeration(adjMat, entry.c);
+		synchronized(this){
+			if(run != runId)
+				return;
+			plateauEnum.setDeadline(deadline);
+			plateauEnum.setSolutionBudget(solutionBudget);
+			plateauEnum.setDiscoveredFingerprints(discoveredFingerprints);
+		}
+		plateauEnum.setListener((fromIndex, toIndex) -> addPlateauClusterings(entry, plateauEnum, fromIndex, toIndex, run));
+		plateauEnum.enumerate();
+		
+		synchronized(discoveredClusterings){
+			if(isStopped || run != runId)
+				return;
+			entry.exploredNbEdit = 1;
+			entry.addExploration(plateauEnum.foundClusterings.size(), plateauEnum.execTime);
+			String desc = "solId:"+entry.c.getId()+",time:"+plateauEnum.execTime;
+			execTimesByNbEditMap.get(1).add(desc);
+		}
 		
-		//Tear Down
-	    executor.shutdown();
-
-	    //Wait for all threads to finish
-	    while (!executor.isTerminated())
-	    {
-	        //wait for infinity time
-	    }
-	    System.out.println("Finished all threads (without time limit) !!");	
-	    
-	    return(threads);
-	} 
-	
-	
-	public Set<Clustering> keepUndiscoveredClusterings(Set<Clustering> candidates, Set<Clustering> discoveredClusterings){
-		Set<Clustering> subset = new HashSet<Clustering>(); // hashset does not eliminate duplicated Clustering objects
-		
-		for(Clustering c1 : candidates){
-			// --------------------
-			boolean skip = false;
-			for(Clustering c2 : subset){
-				if(c2.equals(c1)){
-					skip = true;
-					break;
-				}
-			}
-			// --------------------
-			if(!skip){
-				boolean add = true;
-				for(Clustering c2 : discoveredClusterings){
-					if(c1.equals(c2)){
-						add = false;
-						break;
-					}
-				}
-				if(add)
-					subset.add(c1);
+		if(this.maxNbEdit > 1)
+			schedule(entry, 2, run);
+	}
+	
+	
+	// It adds the clusterings of the plateau of 'entry' whose indexes are in ['fromIndex','toIndex'[ into the solutions, and schedules them
+	//	with the next edit distance. It returns false if the results of the run are discarded, so that the traversal stops
+	boolean addPlateauClusterings(FrontierEntry entry, OneEditPlateauEnumeration plateauEnum, int fromIndex, int toIndex, int run){
+		List<Clustering> plateau = plateauEnum.foundClusterings;
+		List<FrontierEntry> newEntries = new ArrayList<FrontierEntry>(toIndex-fromIndex);
+		synchronized(discoveredClusterings){
+			if(isStopped || run != runId)
+				return(false);
+			
+			// the solutions are new, since they are checked against 'discoveredFingerprints' as soon as they are found
+			for(int i=fromIndex; i<toIndex; i++){
+				Clustering c1 = plateau.get(i);
+				c1.setId(idCounter++);
+				int parentIndex = plateauEnum.parentIndexes.get(i); // before i, since a clustering is found when its parent is traversed
+				c1.setParentClusteringId((parentIndex == -1) ? entry.c.getId() : plateau.get(parentIndex).getId());
+				int generation = entry.generation + plateauEnum.distances.get(i);
+				FrontierEntry newEntry = new FrontierEntry(c1, generation, entry.yield); // the yield of a new solution is predicted from its parent
+				newEntry.exploredNbEdit = 1;
+				newEntries.add(newEntry);
+				
+				while(clusteringSizesByPass.size() <= generation)
+					clusteringSizesByPass.add(0);
+				clusteringSizesByPass.set(generation, clusteringSizesByPass.get(generation)+1);
 			}
+			foundClusterings.addAll(plateau.subList(fromIndex, toIndex));
+			discoveredClusterings.addAll(plateau.subList(fromIndex, toIndex));
+    		System.out.println("Final size (during the enumeration): " + foundClusterings.size());
 		}
-		return(subset);
+		
+		if(this.maxNbEdit > 1)
+			for(FrontierEntry newEntry : newEntries)
+				schedule(newEntry, 2, run);
+		return(true);
 	}
 	
 	
@@ -408,6 +488,11 @@ public class EnumerationBFS extends AbstractEnumeration {
 		
 		filepath = outputDirPath+"/"+"clusteringSizesByPass.txt";
 		writeIntoFile(filepath, content);
+		
+		// ===============================
+		
+		filepath = outputDirPath+"/"+"filterStatistics.txt";
+		writeIntoFile(filepath, filterStatistics.toString());
 	
 	}
 	
@@ -0,0 +1,428 @@
+package rns;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import myUtils.Clustering;
+import rns.utils.ClusteringFingerprintSet;
+import rns.utils.ShardProtocol;
+import rns.utils.ShardProtocol.Record;
+
+
+/**
+ * The same enumeration as 'EnumerationBFS', distributed over several worker processes (see 'ShardWorker'),
+ *   so that the memory and the cores of several JVMs can be used. This class is the coordinator: it starts the workers on the local host,
+ *   which connect to it through a local socket.
+ *
+ * The discovered clusterings are sharded by the hash of their fingerprint (see 'ClusteringFingerprintSet.Fingerprint.getShard()'):
+ *   each worker owns the clusterings of its shard, deduplicates them and explores the new ones. The solutions found by a worker
+ *   are sent to the coordinator, which routes them to their owner. The workers communicate only through the coordinator.
+ *   Each worker orders its explorations as 'EnumerationBFS' does (by edit distance, then by yield), but it applies the 1-edit operations
+ *   of a clustering without traversing its plateau, since the clusterings of the plateau are owned by the other shards.
+ *
+ * The end of the enumeration is detected by counting the routed clusterings whose processing is not finished: a worker sends
+ *   the solutions found from a clustering before telling that its processing is finished, so the count is zero only when
+ *   the frontier is empty in all the processes. The enumeration also stops when the time limit or the solution limit is reached.
+ *   The workers then send their new solutions to the coordinator, which writes them as 'EnumerationBFS' does.
+ */
+public class EnumerationBFSDistributed extends AbstractEnumeration {
+
+	public double tilim;
+	public double solLim;
+	public boolean isBruteForce;
+	public ArrayList<Integer> clusteringSizesByPass; // the number of new clusterings by generation (i.e. distance to the initial clustering)
+	int NB_PROCESS;
+	int NB_THREAD; // the number of threads of each worker process
+
+	// the time given to the workers to connect, in milliseconds
+	static int CONNECTION_TIMEOUT = 60000;
+	// the time given to the workers to return their results once the enumeration is stopped, in milliseconds
+	static long STOP_GRACE_PERIOD = 1000;
+
+	// ============================
+	// state of the enumeration, accessed only when holding the lock of 'this'
+	ShardConnection[] shards;
+	long nbPendingClustering; // the number of clusterings routed to a worker, whose processing is not finished
+	long nbAcceptedClustering; // the number of new solutions accepted by the workers, including the initial clustering
+	int nbResult; // the number of workers which have sent their results
+	boolean isStopped;
+	Exception failure; // the error which stopped the enumeration, e.g. the loss of the connection to a worker (null if none)
+	// ============================
+
+
+
+	public EnumerationBFSDistributed(double[][] adjMat_, double tilim_, int solLim_, int NB_THREAD_, int maxNbEdit_, boolean isBruteForce_,
+			int NB_PROCESS_)
+	{
+		super(adjMat_, maxNbEdit_);
+		idCounter++;
+		tilim = tilim_;
+		solLim = solLim_;
+		isBruteForce = isBruteForce_;
+		clusteringSizesByPass = new ArrayList<Integer>();
+		NB_THREAD = NB_THREAD_;
+		NB_PROCESS = NB_PROCESS_;
+	}
+
+
+	public void reset(){
+		this.idCounter = 0;
+		this.execTime = 0.0;
+		this.outDirPath="";
+		this.clusteringSizesByPass.clear();
+		this.initClustering = null;
+		this.foundClusterings.clear();
+	}
+
+
+
+	// The connection to a worker. The messages sent to the worker are queued and written by a dedicated thread,
+	//	so that the thread reading the messages of another worker is never blocked by a full socket buffer
+	class ShardConnection {
+		int shardId;
+		Socket socket;
+		DataInputStream in;
+		DataOutputStream out;
+		LinkedBlockingQueue<byte[]> outbox = new LinkedBlockingQueue<byte[]>();
+		List<Record> results = null;
+
+		ShardConnection(int shardId_, Socket socket_) throws IOException {
+			shardId = shardId_;
+			socket = socket_;
+			socket.setTcpNoDelay(true);
+			in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+			out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+		}
+
+		void send(byte[] message){
+			outbox.add(message);
+		}
+
+		void startThreads(){
+			Thread writer = new Thread(this::write, "shard-writer-" + shardId);
+			writer.setDaemon(true);
+			writer.start();
+			Thread reader = new Thread(this::read, "shard-reader-" + shardId);
+			reader.setDaemon(true);
+			reader.start();
+		}
+
+		void write(){
+			try {
+				while(true){
+					byte[] message = outbox.take();
+					out.write(message);
+					if(outbox.isEmpty())
+						out.flush();
+					if(message.length == 1 && message[0] == ShardProtocol.STOP){
+						out.flush();
+						return;
+					}
+				}
+			} catch (IOException | InterruptedException e) {
+				connectionLost(this, e);
+			}
+		}
+
+		void read(){
+			try {
+				while(true){
+					byte type = in.readByte();
+					if(type == ShardProtocol.SOLUTIONS)
+						route(ShardProtocol.readRecords(in, initClustering.n));
+					else if(type == ShardProtocol.DONE){
+						int nbDone = in.readInt();
+						int nbAccepted = in.readInt();
+						finishClusterings(nbDone, nbAccepted);
+					}
+					else if(type == ShardProtocol.RESULTS){
+						List<Record> records = ShardProtocol.readRecords(in, initClustering.n);
+						addResults(this, records);
+						return;
+					}
+					else
+						throw new IOException("Unknown message type: " + type);
+				}
+			} catch (IOException e) {
+				connectionLost(this, e);
+			}
+		}
+	}
+
+
+
+	/**
+	 * It starts 'NB_PROCESS' workers, routes the initial clustering to its owner, then waits until the frontier is empty in all the workers,
+	 *   or the time limit or the solution limit is reached. The solutions of 'discoveredClusterings' are sent to their owner,
+	 *   so that they are not explored again.
+	 */
+	public void enumerate(Clustering initClustering, String passOutputDirPath, Set<Clustering> discoveredClusterings){
+
+		initClustering.setId(idCounter);
+		this.initClustering = initClustering;
+		idCounter++;
+
+		outDirPath = passOutputDirPath;
+		System.out.println("--- "+outDirPath);
+
+		long startTime = System.currentTimeMillis();
+		long deadline = (tilim > 0) ? startTime + (long) (tilim*1000) : Long.MAX_VALUE;
+
+		synchronized(this){
+			nbPendingClustering = 0;
+			nbAcceptedClustering = 0;
+			nbResult = 0;
+			isStopped = false;
+			failure = null;
+		}
+
+		List<Process> processes = new ArrayList<Process>();
+		try (ServerSocket server = new ServerSocket(0, NB_PROCESS, InetAddress.getLoopbackAddress())) {
+
+			// ====================================================================================
+			// the workers are started, then they connect to the coordinator
+
+			for(int i=0; i<NB_PROCESS; i++)
+				processes.add(startWorker(server.getLocalPort()));
+			server.setSoTimeout(CONNECTION_TIMEOUT);
+			shards = new ShardConnection[NB_PROCESS];
+			for(int i=0; i<NB_PROCESS; i++)
+				shards[i] = new ShardConnection(i, server.accept());
+
+			for(ShardConnection shard : shards){
+				DataOutputStream out = shard.out;
+				out.writeByte(ShardProtocol.INIT);
+				out.writeInt(shard.shardId);
+				out.writeInt(NB_PROCESS);
+				out.writeInt(maxNbEdit);
+				out.writeInt(NB_THREAD);
+				out.writeBoolean(isBruteForce);
+				out.writeLong((deadline == Long.MAX_VALUE) ? -1 : Math.max(0, deadline-System.currentTimeMillis()));
+				ShardProtocol.writeGraph(out, adjMat);
+				out.flush();
+			}
+
+			// ====================================================================================
+			// the already discovered solutions, then the initial clustering, are sent to their owner
+
+			List<List<Record>> knownRecordsByShard = new ArrayList<List<Record>>();
+			for(int i=0; i<NB_PROCESS; i++)
+				knownRecordsByShard.add(new ArrayList<Record>());
+			for(Clustering c : discoveredClusterings)
+				if(!c.equals(this.initClustering))
+					knownRecordsByShard.get(getShard(c)).add(new Record(c, 0));
+			for(int i=0; i<NB_PROCESS; i++)
+				if(knownRecordsByShard.get(i).size() > 0)
+					shards[i].send(ShardProtocol.encodeRecords(ShardProtocol.KNOWN, knownRecordsByShard.get(i)));
+
+			for(ShardConnection shard : shards)
+				shard.startThreads();
+			List<Record> initRecords = new ArrayList<Record>();
+			initRecords.add(new Record(this.initClustering, 0));
+			route(initRecords);
+
+			// ====================================================================================
+
+			awaitEnd(deadline);
+			synchronized(this){
+				isStopped = true;
+			}
+			for(ShardConnection shard : shards)
+				shard.send(new byte[]{ShardProtocol.STOP});
+			awaitResults(System.currentTimeMillis() + STOP_GRACE_PERIOD + CONNECTION_TIMEOUT);
+
+		} catch (IOException e) {
+			synchronized(this){
+				if(failure == null)
+					failure = e;
+			}
+		} finally {
+			if(shards != null)
+				for(ShardConnection shard : shards)
+					if(shard != null)
+						try {
+							shard.socket.close();
+						} catch (IOException e) {
+							e.printStackTrace();
+						}
+			for(Process p : processes)
+				p.destroy();
+		}
+
+		// ====================================================================================
+		// the results of a lost worker are missing, so the solutions are not written, since they may be mistaken for the complete set
+
+		synchronized(this){
+			if(failure == null && nbResult < NB_PROCESS)
+				failure = new IOException((NB_PROCESS-nbResult) + " worker(s) did not send their results");
+			if(failure != null)
+				throw new IllegalStateException("The distributed enumeration failed", failure);
+		}
+
+		collectResults();
+
+		execTime = (float) (System.currentTimeMillis()-startTime)/1000;
+		System.out.println("Final size: " + foundClusterings.size());
+		System.out.println("execution time: " + execTime + "s");
+
+		writeClusteringIntoFiles(outDirPath);
+		writeCommonStatisticsIntoFiles(outDirPath);
+		writeStatisticsIntoFiles(outDirPath);
+	}
+
+
+
+	// It starts a worker process with the same Java runtime and class path as this one
+	Process startWorker(int port) throws IOException {
+		String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+		ProcessBuilder builder = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+				ShardWorker.class.getName(), InetAddress.getLoopbackAddress().getHostAddress(), port+"");
+		builder.inheritIO();
+		return(builder.start());
+	}
+
+
+	int getShard(Clustering c){
+		return(new ClusteringFingerprintSet.Fingerprint(c.membership).getShard(NB_PROCESS));
+	}
+
+
+	// It sends each clustering to its owner, and counts it as pending until the owner has processed it
+	void route(List<Record> records){
+		List<List<Record>> recordsByShard = new ArrayList<List<Record>>();
+		for(int i=0; i<NB_PROCESS; i++)
+			recordsByShard.add(new ArrayList<Record>());
+		for(Record r : records)
+			recordsByShard.get(getShard(r.c)).add(r);
+
+		synchronized(this){
+			if(isStopped)
+				return;
+			nbPendingClustering += records.size();
+		}
+		for(int i=0; i<NB_PROCESS; i++)
+			if(recordsByShard.get(i).size() > 0)
+				shards[i].send(ShardProtocol.encodeRecords(ShardProtocol.CLUSTERINGS, recordsByShard.get(i)));
+	}
+
+
+	synchronized void finishClusterings(int nbDone, int nbAccepted){
+		nbPendingClustering -= nbDone;
+		nbAcceptedClustering += nbAccepted;
+		if(nbPendingClustering == 0 || (this.solLim>=0 && nbAcceptedClustering>=this.solLim))
+			notifyAll();
+	}
+
+
+	synchronized void addResults(ShardConnection shard, List<Record> records){
+		shard.results = records;
+		nbResult++;
+		notifyAll();
+	}
+
+
+	synchronized void connectionLost(ShardConnection shard, Exception e){
+		if(shard.results != null) // the connection is closed after the results
+			return;
+		System.out.println("The connection to the shard " + shard.shardId + " is lost");
+		e.printStackTrace();
+		if(failure == null)
+			failure = e;
+		notifyAll();
+	}
+
+
+	// It blocks until the frontier is empty, the solution limit is reached, a worker is lost or the time 'limit' (in milliseconds) is reached
+	synchronized void awaitEnd(long limit){
+		long now = System.currentTimeMillis();
+		while(nbPendingClustering > 0 && !(this.solLim>=0 && nbAcceptedClustering>=this.solLim) && failure == null && now < limit){
+			try {
+				wait(Math.min(limit-now, Integer.MAX_VALUE));
+			} catch (InterruptedException e) {
+				e.printStackTrace();
+				break;
+			}
+			now = System.currentTimeMillis();
+		}
+	}
+
+
+	// It blocks until all the workers have sent their results, a worker is lost or the time 'limit' (in milliseconds) is reached
+	synchronized void awaitResults(long limit){
+		long now = System.currentTimeMillis();
+		while(nbResult < NB_PROCESS && failure == null && now < limit){
+			try {
+				wait(limit-now);
+			} catch (InterruptedException e) {
+				e.printStackTrace();
+				break;
+			}
+			now = System.currentTimeMillis();
+		}
+	}
+
+
+	// It adds the new solutions of all the workers into 'foundClusterings', within the solution limit
+	synchronized void collectResults(){
+		foundClusterings.add(this.initClustering);
+		clusteringSizesByPass.add(1);
+		if(shards == null)
+			return;
+		for(ShardConnection shard : shards){
+			if(shard == null || shard.results == null)
+				continue;
+			for(Record r : shard.results){
+				if(r.generation == 0) // the initial clustering
+					continue;
+				// the workers may accept a few more solutions before receiving STOP
+				if(this.solLim>=0 && foundClusterings.size()>=this.solLim)
+					break;
+				Clustering c = r.c;
+				c.setId(idCounter++);
+				foundClusterings.add(c);
+				while(clusteringSizesByPass.size() <= r.generation)
+					clusteringSizesByPass.add(0);
+				clusteringSizesByPass.set(r.generation, clusteringSizesByPass.get(r.generation)+1);
+			}
+		}
+	}
+
+
+
+	public void writeStatisticsIntoFiles(String outputDirPath){
+		String filepath = outputDirPath+"/"+"nbPass.txt";
+		writeIntoFile(filepath, clusteringSizesByPass.size()+"");
+
+		// ===============================
+
+		String content="";
+		for(Integer size : clusteringSizesByPass)
+			content += size+"\n";
+
+		filepath = outputDirPath+"/"+"clusteringSizesByPass.txt";
+		writeIntoFile(filepath, content);
+
+		// ===============================
+
+		content="";
+		if(shards != null)
+			for(ShardConnection shard : shards)
+				if(shard != null)
+					content += shard.shardId+":"+((shard.results != null) ? shard.results.size() : -1)+"\n";
+
+		filepath = outputDirPath+"/"+"shardSizes.txt";
+		writeIntoFile(filepath, content);
+	}
+
+}
@@ -4,18 +4,24 @@ import java.io.BufferedWriter;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import myUtils.Clustering;
+import rns.utils.ClusteringFingerprintSet;
+import rns.utils.PruningFilterStatistics;
 
 
 public class EnumerationBFSIncremental extends AbstractEnumeration {
@@ -27,7 +33,25 @@ public class EnumerationBFSIncremental extends AbstractEnumeration {
 	public Map<Integer, ArrayList<String>> execTimesByNbEditMap;
 	public ArrayList<Integer> clusteringSizesByPass;
 	int NB_THREAD;
+	// the number of solutions which can still be found before reaching 'solLim' in the current pass (null if there is no limit)
+	AtomicLong solutionBudget;
+	// the fingerprints of the discovered solutions, checked and updated by the tasks as soon as they find a solution
+	ClusteringFingerprintSet discoveredFingerprints;
+	// the threads running the enumeration tasks and their fork/join subtasks (null in the single thread case)
+	ForkJoinPool forkJoinPool;
+	// the statistics of the pruning filters, shared by all the enumerations on the graph (see 'MyGenericEnumeration.passesFilters()')
+	PruningFilterStatistics filterStatistics;
 	double remainingTime;
+	// the executor of the enumeration tasks, created once and reused by all the passes: 'forkJoinPool', so that the tasks
+	//	and their subtasks share its NB_THREAD threads, or a single thread
+	Executor executor;
+	// the tasks submitted and not finished yet, at most 'nbTaskPermit' (see 'processParallelCurrInitClusterings()')
+	Semaphore taskPermits;
+	int nbTaskPermit;
+	// the number of tasks which can wait in the queue of 'executor', for each thread
+	static int NB_QUEUED_TASK_BY_THREAD = 2;
+	// the first error thrown by a task (e.g. an OutOfMemoryError), which makes the results incomplete. Accessed only when holding the lock of 'this'
+	Throwable failure;
 
 	
 	public EnumerationBFSIncremental(double[][] adjMat_, double tilim_, int solLim_, int NB_THREAD_, int maxNbEdit_, boolean isBruteForce_)
@@ -44,6 +68,20 @@ public class EnumerationBFSIncremental extends AbstractEnumeration {
 		clusteringSizesByPass = new ArrayList<Integer>();
 		
 		NB_THREAD = NB_THREAD_;
+		filterStatistics = new PruningFilterStatistics(this.maxNbEdit);
+		if(NB_THREAD > 1){
+			forkJoinPool = new ForkJoinPool(NB_THREAD);
+			executor = forkJoinPool;
+		}
+		else
+			executor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(), 
+					r -> {
+						Thread t = new Thread(r);
+						t.setDaemon(true); // the pool does not prevent the program from ending
+						return t;
+					});
+		nbTaskPermit = (NB_QUEUED_TASK_BY_THREAD+1)*NB_THREAD;
+		taskPermits = new Semaphore(nbTaskPermit);
 		
 		nextInitClusterings = new HashSet<Clustering>();
 	}
@@ -62,6 +100,7 @@ public class EnumerationBFSIncremental extends AbstractEnumeration {
 		this.initClustering = null;
 		this.nextInitClusterings.clear();
 		this.foundClusterings.clear();
+		this.filterStatistics = new PruningFilterStatistics(this.maxNbEdit);
 	}
 	
 	
@@ -86,6 +125,11 @@ public class EnumerationBFSIncremental extends AbstractEnumeration {
 		foundClusterings.add(this.initClustering);
 		discoveredClusterings.add(this.initClustering);
 		clusteringSizesByPass.add(nextInitClusterings.size());
+		discoveredFingerprints = new ClusteringFingerprintSet();
+		discoveredFingerprints.addAll(discoveredClusterings);
+		synchronized(this){
+			failure = null;
+		}
 		
 		enumerateHelper(1, maxNbEdit, passOutputDirPath, discoveredClusterings); // it loads new clusterings into 'nextInitClusterings'
 
@@ -126,6 +170,8 @@ public class EnumerationBFSIncremental extends AbstractEnumeration {
 			Set<Clustering> currInitClusterings = new HashSet<Clustering>();
 			currInitClusterings.addAll(nextInitClusterings);
 			nextInitClusterings.clear();
+			// the tasks of the pass stop as soon as they have found enough solutions to reach 'solLim' (see 'MyGenericEnumeration.setSolutionBudget()')
+			solutionBudget = (this.solLim>=0) ? new AtomicLong((long) this.solLim - foundClusterings.size()) : null;
 
 //			// sequential version, we put it here just in case // TODO there is a bug ...... USE ONLY FOR DEBUG
 //			processSeqCurrInitClusteringsWithoutTimeLimit(currInitClusterings, minNbEdit, maxNbEdit, -1, discoveredClusterings);
@@ -145,9 +191,10 @@ public class EnumerationBFSIncremental extends AbstractEnumeration {
 	        {
 	        	MyGenericEnumeration myEnum = threads.get(i);
 	        	Set<Clustering> currFoundClusterings = myEnum.foundClusterings;
-				Set<Clustering> subset = keepUndiscoveredClusterings(currFoundClusterings, discoveredClusterings);
+				// the solutions found by the tasks are new, since they are checked against 'discoveredFingerprints' as soon as they are found
+				Set<Clustering> subset = currFoundClusterings;
 				for(Clustering c1 : subset){ 
-					c1.computeImbalance(adjMat); 
+					// the imbalance is already known from the parent clustering, see 'MyGenericEnumeration.enumerateClusterings()'
 					// id should be handled here, since we cannot generate only non-visited clusterings in BFS
 					//	so, we need to check if a clustering is already visited or not
 					c1.setId(idCounter++); 
@@ -172,7 +219,7 @@ public class EnumerationBFSIncremental extends AbstractEnumeration {
 	        enumTime = (float) (System.currentTimeMillis()-startTime)/1000;
 	        execTime += enumTime;
 			if(tilim > 0) { // if time limit is provided by user
-				remainingTime = tilim-enumTime;
+				remainingTime = tilim-execTime; // the time spent in all the passes
 				System.out.println("22remainingTime: " + remainingTime + "s");
 			}
     		System.out.println("Final size (during the passes): " + foundClusterings.size());
@@ -213,12 +260,15 @@ public class EnumerationBFSIncremental extends AbstractEnumeration {
 //			}
 
 			MyGenericEnumeration edit = new MyGenericEnumeration(minNbEdit, maxNbEdit, adjMat, initClustering, pass, isBruteForce);
+			edit.setForkJoinPool(forkJoinPool);
+			edit.setFilterStatistics(filterStatistics);
+			edit.setSolutionBudget(solutionBudget);
 			edit.enumerate();
 			Set<Clustering> currFoundClusterings = edit.foundClusterings;
 			
 			System.out.println("-------------------------");
 			for(Clustering c1 : currFoundClusterings){
-				c1.computeImbalance(adjMat); //System.out.println(c1);
+				//System.out.println(c1);
 				c1.setId(idCounter++); 
 //				System.out.println("!!!!!!!!! nb edit parent:" + c1.getNbEditParent());
 //				System.out.println(c1);
@@ -241,50 +291,11 @@ public class EnumerationBFSIncremental extends AbstractEnumeration {
 	public ArrayList<MyGenericEnumeration> processParallelCurrInitClusteringsWithTimeLimit(
 			Set<Clustering> currInitClusterings, int minNbEdit, int maxNbEdit, int NB_THREAD, long timeoutThreads, int pass)
 	{
-		ExecutorService executor = Executors.newFixedThreadPool(NB_THREAD);
-		ArrayList<MyGenericEnumeration> threads = new ArrayList<MyGenericEnumeration>();
-		List<Callable<MyGenericEnumeration>> callables = new ArrayList<>();
-		
-		int initCounter = 0;
-		for(Clustering initClustering : currInitClusterings){
-			initCounter++;
-//			System.out.println("-------------------------");
-//			System.out.println("nb thread: " + NB_THREAD);
-//			System.out.println("now :"+initCounter+" of " + currInitClusterings.size());
-//			System.out.println("Current size: " + foundClusterings.size());
-			
-			MyGenericEnumeration e = new MyGenericEnumeration(minNbEdit, maxNbEdit, adjMat, initClustering, pass, isBruteForce);
-			threads.add(e);
-	    	//executor.execute(e);
-			
-			Callable<MyGenericEnumeration> task = () -> {
-				e.enumerate();
-				return e;
-			};
-			callables.add(task);
-		} // end of initClustering
-		
-		try {
-			// source1: https://stackoverflow.com/questions/2758612/executorservice-that-interrupts-tasks-after-a-timeout
-			// source2: https://gkemayo.developpez.com/tutoriels/java/introduction-java-8-concurrency/
-			// source3: https://www.baeldung.com/java-runnable-callable
-			
-			// whatever the size, timeout is 'timeoutThreads' seconds for the totality of all these tasks
-			System.out.println("tilim: "+ timeoutThreads);
-			executor.invokeAll(callables, timeoutThreads*1000, TimeUnit.MILLISECONDS); 
-		} catch (InterruptedException e1) {
-			// TODO Auto-generated catch block
-			e1.printStackTrace();
-		}
-		
-		//Tear Down
-	    executor.shutdown();
-
-	    //Wait for all threads to finish
-	    while (!executor.isTerminated())
-	    {
-	        //wait for infinity time
-	    }
+		// whatever the size, timeout is 'timeoutThreads' seconds for the totality of all these tasks.
+		//	Each task checks this deadline in its enumeration loops, so it returns its partial results shortly after it (see 'MyGenericEnumeration.setDeadline()')
+		System.out.println("tilim: "+ timeoutThreads);
+		long deadline = System.currentTimeMillis() + timeoutThreads*1000;
+		ArrayList<MyGenericEnumeration> threads = processParallelCurrInitClusterings(currInitClusterings, minNbEdit, maxNbEdit, deadline, pass);
 	    System.out.println("Finished threads with time limit!!");	
 	    
 	    return(threads);
@@ -296,39 +307,111 @@ public class EnumerationBFSIncremental extends AbstractEnumeration {
 	public ArrayList<MyGenericEnumeration> processParallelCurrInitClusteringsWithoutTimeLimit(
 			Set<Clustering> currInitClusterings, int minNbEdit, int maxNbEdit, int NB_THREAD, int pass)
 	{
-		ExecutorService executor = Executors.newFixedThreadPool(NB_THREAD);
-		ArrayList<MyGenericEnumeration> threads = new ArrayList<MyGenericEnumeration>();
-		
-		int initCounter = 0;
-		for(Clustering initClustering : currInitClusterings){
-			initCounter++;
-//			System.out.println("-------------------------");
-//			System.out.println("nb thread: " + NB_THREAD);
-//			System.out.println("now :"+initCounter+" of " + currInitClusterings.size());
-//			System.out.println("Current size: " + foundClusterings.size());
-//			System.out.println("maxNbEdit: " + maxNbEdit);
-
-			MyGenericEnumeration e = new MyGenericEnumeration(minNbEdit, maxNbEdit, adjMat, initClustering, pass, isBruteForce);
-			threads.add(e);
-	    	executor.execute(e);
-
-		} // end of initClustering
-
-		
-		//Tear Down
-	    executor.shutdown();
-
-	    //Wait for all threads to finish
-	    while (!executor.isTerminated())
-	    {
-	        //wait for infinity time
-	    }
+		ArrayList<MyGenericEnumeration> threads = processParallelCurrInitClusterings(currInitClusterings, minNbEdit, maxNbEdit, Long.MAX_VALUE, pass);
 	    System.out.println("Finished all threads (without time limit) !!");	
 	    
 	    return(threads);
 	} 
 	
 	
+	
+	/**
+	 * It enumerates the clusterings 'currInitClusterings' in parallel with the threads of 'executor', in the order of their predicted yield.
+	 * The task of a clustering creates its enumeration only when it starts, and the submission of the tasks blocks 
+	 *   while 'nbTaskPermit' tasks are not finished yet. So, the number of enumerations in progress (with their tables) 
+	 *   does not depend on the size of the frontier.
+	 * 
+	 * @param currInitClusterings
+	 * @param minNbEdit
+	 * @param maxNbEdit
+	 * @param deadline: see 'MyGenericEnumeration.setDeadline()'
+	 * @param pass
+	 * @return the enumerations performed, in the order of their start
+	 * @throws IllegalStateException if a task fails: the pass is stopped, and the solutions are not written, since they may be mistaken 
+	 * 		for the complete set
+	 */
+	ArrayList<MyGenericEnumeration> processParallelCurrInitClusterings(
+			Set<Clustering> currInitClusterings, int minNbEdit, int maxNbEdit, long deadline, int pass)
+	{
+		ArrayList<MyGenericEnumeration> threads = new ArrayList<MyGenericEnumeration>();
+		try {
+			for(Clustering initClustering : orderByPredictedYield(currInitClusterings)){
+				taskPermits.acquire(); // blocks while too many tasks are waiting or running
+				synchronized(this){
+					if(failure != null){ // the pass is stopped
+						taskPermits.release();
+						break;
+					}
+				}
+				executor.execute(() -> {
+					try {
+						synchronized(this){
+							if(failure != null) // the pass is stopped
+								return;
+						}
+						MyGenericEnumeration e = new MyGenericEnumeration(minNbEdit, maxNbEdit, adjMat, initClustering, pass, isBruteForce);
+						e.setForkJoinPool(forkJoinPool);
+						e.setFilterStatistics(filterStatistics);
+						e.setDeadline(deadline);
+						e.setSolutionBudget(solutionBudget);
+						e.setDiscoveredFingerprints(discoveredFingerprints);
+						synchronized(threads){
+							threads.add(e);
+						}
+						e.enumerate();
+					} catch (Throwable e) { // an error too, since the pass cannot be complete without this task
+						System.out.println("Exception is caught in the enumeration of the clustering " + initClustering.getId());
+						e.printStackTrace();
+						synchronized(this){
+							if(failure == null)
+								failure = e;
+						}
+					} finally {
+						taskPermits.release();
+					}
+				});
+			}
+			
+			// wait for all the tasks: they hold all the permits until they finish
+			taskPermits.acquire(nbTaskPermit);
+			taskPermits.release(nbTaskPermit);
+		} catch (InterruptedException e) {
+			e.printStackTrace();
+		}
+		synchronized(this){
+			if(failure != null)
+				throw new IllegalStateException("The enumeration failed in an exploration task", failure);
+		}
+		
+		synchronized(threads){
+			return(new ArrayList<MyGenericEnumeration>(threads));
+		}
+	}
+	
+	
+	/**
+	 * It sorts the clusterings by decreasing predicted yield, so that the most productive ones are enumerated first 
+	 *   when the pass is cut short by 'solLim' or 'tilim'. A clustering whose parent has many other children in the pass
+	 *   lies likely in a region with many optimal solutions (e.g. a plateau of 1-edit moves), so its yield is predicted 
+	 *   by the number of its siblings. Ties are broken by the edit distance from the parent (the closest first), then by id.
+	 * 
+	 * @param clusterings
+	 * @return
+	 */
+	public List<Clustering> orderByPredictedYield(Set<Clustering> clusterings){
+		Map<Long, Integer> nbChildrenByParent = new HashMap<>();
+		for(Clustering c : clusterings)
+			nbChildrenByParent.merge(c.getParentClusteringId(), 1, Integer::sum);
+		
+		List<Clustering> ordered = new ArrayList<>(clusterings);
+		ordered.sort(Comparator.comparingInt((Clustering c) -> -nbChildrenByParent.get(c.getParentClusteringId()))
+				.thenComparingInt(Clustering::getNbEditParent)
+				.thenComparingLong(Clustering::getId));
+		return(ordered);
+	}
+	
+	
+	
 	public Set<Clustering> keepUndiscoveredClusterings(Set<Clustering> candidates, Set<Clustering> discoveredClusterings){
 		Set<Clustering> subset = new HashSet<Clustering>(); // hashset does not eliminate duplicated Clustering objects
 		
@@ -388,6 +471,11 @@ public class EnumerationBFSIncremental extends AbstractEnumeration {
 		
 		filepath = outputDirPath+"/"+"clusteringSizesByPass.txt";
 		writeIntoFile(filepath, content);
+		
+		// ===============================
+		
+		filepath = outputDirPath+"/"+"filterStatistics.txt";
+		writeIntoFile(filepath, filterStatistics.toString());
 	
 	}
 	
@@ -2,7 +2,6 @@ package rns;
 
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
@@ -11,22 +10,32 @@ import java.util.Map;
 import java.util.Queue;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 import rns.utils.ArrayOperations;
 import myUtils.Clustering;
 import rns.utils.Combination;
-import rns.utils.Combination2;
+import rns.utils.ClusterInteractionGraph;
+import rns.utils.ConnectedSubsets;
 import rns.utils.DirectedGraph;
 import rns.utils.MyCGraph;
-import rns.utils.Permutation;
-import rns.utils.UndirectedGraph;
-import rns.utils.UniquePartitionSize;
+import rns.utils.EditPatternTables;
+import rns.utils.PruningFilterStatistics;
+import rns.utils.BitMaskGraph;
+import rns.utils.ClusteringFingerprintSet;
 import rns.utils.TNode;
+import rns.utils.ZeroDeltaMoveIndex;
 
 
-public class MyGenericEnumeration extends Thread {
+public class MyGenericEnumeration implements Runnable {
+
+	// When true, the imbalance of each new clustering, obtained incrementally from its parent, is verified by a full computation in O(n^2)
+	public static boolean isImbalanceVerified = false;
 
 	int pass; // pass id
 	Clustering initClustering;
@@ -43,14 +52,35 @@ public class MyGenericEnumeration extends Thread {
 	double totalExecTime;
 	boolean isBruteForce = false; // value by default
 	
+	// scratch buffers of the connectivity tests on the moving nodes, one set per thread (see the class 'ConnectivityBuffers')
+	ThreadLocal<ConnectivityBuffers> connBuffers;
+	// when it is not null, the work of 'enumerateByNbEdit()' is split into fork/join subtasks run by this pool
+	ForkJoinPool forkJoinPool = null;
+	// the number of node subsets processed sequentially by a fork/join subtask
+	static int NODE_SUBSET_GRAIN = 8;
+	// from this edit distance, the growth of the moving node subsets is bounded by the imbalance change (see 'ZeroDeltaMoveIndex.canBeCompleted()')
+	static int BOUNDED_GROWTH_MIN_NB_EDIT = 4;
+	// the hit rate and cost of the pruning filters, which determine the order in which they are applied (see 'passesFilters()')
+	PruningFilterStatistics filterStatistics;
+	// the smallest move cost of each node of the current clustering, which discards the nodes not taking part in any zero-delta operation
+	ZeroDeltaMoveIndex moveIndex = null;
+	// the adjacency of the clusters of the current clustering, which restricts the source cluster combinations to the connected ones
+	ClusterInteractionGraph clusterGraph = null;
+	// the time (in milliseconds) after which the enumeration stops, see 'setDeadline()'
+	long deadline = Long.MAX_VALUE;
+	volatile boolean isTimeLimitReached = false;
+	// the number of solutions which can still be found, shared by all the enumerations (null if there is no limit), see 'setSolutionBudget()'
+	AtomicLong solutionBudget = null;
+	volatile boolean isSolutionBudgetExhausted = false;
+	// the solutions already discovered by all the enumerations (null if not shared), see 'setDiscoveredFingerprints()'
+	ClusteringFingerprintSet discoveredFingerprints = null;
+	
 
 	public MyGenericEnumeration(int minNbEdit_, int maxNbEdit_, double[][] adjMat_, Clustering initClustering_, int pass_, boolean isBruteForce_){
 		maxNbEdit = maxNbEdit_;
 		minNbEdit = minNbEdit_;
 		initClustering = initClustering_;
 		n = initClustering.n;
-		g = new MyCGraph(n, initClustering);
-		g.fillInNodeToWeightedDegreeSum(adjMat_);
 		//idCounter = idCounter_;
 		adjMat = adjMat_;
 		foundClusterings = new HashSet<Clustering>();
@@ -59,6 +89,112 @@ public class MyGenericEnumeration extends Thread {
 		this.pass = pass_;
 		this.isBruteForce = isBruteForce_;
 		
+		if(2*maxNbEdit > BitMaskGraph.MAX_NB_VERTEX) // see the connectivity tests
+			throw new IllegalArgumentException("maxNbEdit cannot be greater than " + BitMaskGraph.MAX_NB_VERTEX/2);
+		connBuffers = ThreadLocal.withInitial(() -> new ConnectivityBuffers(maxNbEdit));
+		filterStatistics = new PruningFilterStatistics(maxNbEdit);
+	}
+	
+	
+	
+	/**
+	 * It allows to split the enumeration of the current clustering into fork/join subtasks
+	 * 	 (by source cluster combination, source cluster sizes and node subsets), balanced between the threads of 'pool' by work stealing.
+	 *   This is useful when the number of clusterings to process is smaller than the number of threads, e.g. in the first passes.
+	 * 
+	 * @param pool
+	 */
+	public void setForkJoinPool(ForkJoinPool pool){
+		this.forkJoinPool = pool;
+	}
+	
+	
+	/**
+	 * It allows to share the statistics of the pruning filters between the enumerations performed on the same graph,
+	 *   so that the order of the filters is learned once for all the clusterings.
+	 * 
+	 * @param stats
+	 */
+	public void setFilterStatistics(PruningFilterStatistics stats){
+		if(stats.getMaxNbEdit() >= this.maxNbEdit)
+			this.filterStatistics = stats;
+	}
+	
+	
+	/**
+	 * It sets the time (as given by 'System.currentTimeMillis()') after which the enumeration stops. The deadline is checked 
+	 *   before each edit distance, source cluster combination, source cluster sizes and moving node subset, so the enumeration 
+	 *   stops shortly after it. The solutions found until then are kept in 'foundClusterings'.
+	 * 
+	 * @param deadline_
+	 */
+	public void setDeadline(long deadline_){
+		this.deadline = deadline_;
+	}
+	
+	
+	// It returns true if the deadline is reached, i.e. if the solutions of 'foundClusterings' may be incomplete
+	public boolean isTimeLimitReached(){
+		if(!isTimeLimitReached && System.currentTimeMillis() >= deadline)
+			isTimeLimitReached = true;
+		return(isTimeLimitReached);
+	}
+	
+	
+	/**
+	 * It sets the solution budget shared by the enumerations: each solution added into 'foundClusterings' consumes one unit of it,
+	 *   and the enumeration stops once it is exhausted, as for the deadline. So, all the enumerations together never find more solutions 
+	 *   than the initial budget, instead of exceeding the solution limit by a whole pass. If the discovered solutions are shared
+	 *   (see 'setDiscoveredFingerprints()'), only the new solutions consume the budget. Otherwise, the owner of the budget 
+	 *   gives back the units of the solutions which turn out to be already discovered.
+	 * 
+	 * @param budget
+	 */
+	public void setSolutionBudget(AtomicLong budget){
+		this.solutionBudget = budget;
+	}
+	
+	
+	/**
+	 * It sets the solutions already discovered, shared by all the enumerations. A solution found by this enumeration is checked and 
+	 *   inserted at once: if another enumeration (or a previous pass) has already found it, it is ignored. So, 'foundClusterings' 
+	 *   contains only new solutions, and the caller does not need to compare them with the discovered ones.
+	 * 
+	 * @param fingerprints
+	 */
+	public void setDiscoveredFingerprints(ClusteringFingerprintSet fingerprints){
+		this.discoveredFingerprints = fingerprints;
+	}
+	
+	
+	// It returns true if the solution budget is exhausted, i.e. if the solutions of 'foundClusterings' may be incomplete
+	public boolean isSolutionBudgetExhausted(){
+		return(isSolutionBudgetExhausted);
+	}
+	
+	
+	// It consumes one unit of the solution budget, if there is any left
+	boolean consumeSolutionBudget(){
+		if(solutionBudget == null)
+			return(true);
+		long b;
+		do {
+			b = solutionBudget.get();
+			if(b <= 0){
+				isSolutionBudgetExhausted = true;
+				return(false);
+			}
+		} while(!solutionBudget.compareAndSet(b, b-1));
+		return(true);
+	}
+	
+	
+	// It returns true if the enumeration must stop, because of the deadline or the solution budget
+	//	(exhausted by this enumeration or another one, or set to 0 by the owner of the budget to stop all the enumerations)
+	boolean isStopped(){
+		if(!isSolutionBudgetExhausted && solutionBudget != null && solutionBudget.get() <= 0)
+			isSolutionBudgetExhausted = true;
+		return(isSolutionBudgetExhausted || isTimeLimitReached());
 	}
 	
 	
@@ -83,8 +219,21 @@ public class MyGenericEnumeration extends Thread {
 	public void enumerate(){
 		
 		System.out.println(initClustering);
+		// the tables are built here, i.e. when the task starts, so that only the running tasks hold tables (see 'MyCGraph.acquire()')
+		g = MyCGraph.acquire(n, initClustering, maxNbEdit);
+		MyCGraph parentGraph = MyCGraph.getRetained(initClustering.getParentGraphId()); // null if dropped
+		if(parentGraph != null)
+			g.fillInNodeToWeightedDegreeSum(adjMat, parentGraph, initClustering.getMovedNodeIds());
+		else
+			g.fillInNodeToWeightedDegreeSum(adjMat);
+		if(!isBruteForce)
+			moveIndex = new ZeroDeltaMoveIndex(g, adjMat, maxNbEdit);
+		clusterGraph = new ClusterInteractionGraph(g);
+		
 		for(int nbEdit=minNbEdit;nbEdit<=this.maxNbEdit;nbEdit++){
 			//System.out.println("nbEdit: " + nbEdit);
+			if(isStopped())
+				break;
 			long startTime = System.currentTimeMillis();
 			
 			enumerateByNbEdit(nbEdit);
@@ -95,6 +244,16 @@ public class MyGenericEnumeration extends Thread {
 			totalExecTime += execTimesByNbEdit[nbEdit-1]; // 'execTimesByNbEdit[nbEdit]' is assigned in 'enumerateByNbEdit'
 
 		}
+		
+		// the found clusterings derive their own tables from 'g' if it is still retained when their exploration starts,
+		//	so we can recycle it only if there is none
+		if(foundClusterings.isEmpty())
+			g.release();
+		else
+			g.retain();
+		g = null;
+		moveIndex = null;
+		clusterGraph = null;
 	}
 	
 	
@@ -105,16 +264,20 @@ public class MyGenericEnumeration extends Thread {
 		foundClusteringsByNbEditMap.put(nbEdit, new ArrayList<Clustering>());
 				
 		
-		List<Integer> clusterIds = new ArrayList<Integer>();
-		for(int i=1; i<=initClustering.getNbCluster(); i++)
-			clusterIds.add(i);
-		
+		// The moving nodes are connected, so their source clusters are connected in the interaction graph of the clusters:
+		//	instead of all the combinations of 'nbSourceCluster' clusters, only the connected groups of clusters are considered
+		List<Runnable> actions = new ArrayList<>();
 		for(int nbSourceCluster=1; nbSourceCluster<=nbEdit; nbSourceCluster++){
-			List<int[]> combClusterIds = Combination.generate(clusterIds, nbSourceCluster);
+			List<int[]> combClusterIds = clusterGraph.getConnectedClusterGroups(nbSourceCluster);
 			for(int[] subClusterIds : combClusterIds){
-				enumerateByNbSourceCluster(nbEdit, nbSourceCluster, subClusterIds);
+				int nbSourceCluster_ = nbSourceCluster;
+				actions.add(() -> enumerateByNbSourceCluster(nbEdit, nbSourceCluster_, subClusterIds));
 			}
 		}
+		if(forkJoinPool != null)
+			forkJoinPool.invoke(new ActionRangeTask(actions, 0, actions.size(), 1));
+		else
+			runAll(actions, 1);
 		
 		// ========
 		
@@ -131,128 +294,176 @@ public class MyGenericEnumeration extends Thread {
 	
 	
 	public void enumerateByNbSourceCluster(int nbEdit, int nbSourceCluster, int[] clusterIds) {
+		if(isStopped())
+			return;
 		// clusterIds: {1,4,5}
-		TreeSet<int[]> allUniquePermClusterSizes = new TreeSet<int[]>(
-				new Comparator<int[]>(){
-
-					@Override
-					public int compare(int[] o1, int[] o2) {
-						int value=0;
-						for(int i=0; i<o1.length; i++){
-							if(o1[i] != o2[i]){
-								value = 1;
-								break;
-							}
-								
-						}
-						return value;
-					}
-				}
-		);
-		
-		List<int[]> result = UniquePartitionSize.generate(nbEdit, nbSourceCluster);
-		for(int[] a : result){
-			allUniquePermClusterSizes.addAll(Permutation.permute(a));
-		}
+		// the source cluster sizes do not depend on the clustering, so they are computed once (see 'EditPatternTables')
+		EditPatternTables.Table allUniquePermClusterSizes = EditPatternTables.getSourceClusterSizes(nbEdit, nbSourceCluster);
 		
 		int[] initClusterSizes = initClustering.getClusterSizes();
 
-		for(int[] sourceClusterSizes : allUniquePermClusterSizes){
+		List<Runnable> actions = new ArrayList<>();
+		for(int p=0; p<allUniquePermClusterSizes.nbRow; p++){
 			//List<Integer> sizes = Arrays.stream(psizes).boxed().collect(Collectors.toList());
 			boolean process = true;
 			for(int i=1; i<=nbSourceCluster; i++){
-				if(sourceClusterSizes[i-1] > initClusterSizes[clusterIds[i-1]-1]){
+				if(allUniquePermClusterSizes.get(p, i-1) > initClusterSizes[clusterIds[i-1]-1]){
 					process = false;
 					break;
 				}
 			}
 			
 			if(process){ // if process = true, then clusterSizes is eligible
-				enumerateByNodes(nbEdit, sourceClusterSizes, clusterIds);
+				int[] sourceClusterSizes = allUniquePermClusterSizes.getRow(p);
+				actions.add(() -> enumerateByNodes(nbEdit, sourceClusterSizes, clusterIds));
 			}
 			
 		}
+		runAll(actions, 1);
 		
 	}
 
 		
 	
 	public void enumerateByNodes(int nbEdit, int[] sourceClusterSizes, int[] sourceClusterIds) {
+		if(isStopped())
+			return;
 		// sourceClusterSizes : {6, 1, 1}
 		// clusterIds : {2,4,5}
 		ArrayList<ArrayList<ArrayList<TNode>>> allSelNodesList = new ArrayList<ArrayList<ArrayList<TNode>>>();
 		
 		ArrayList<ArrayList<Integer>> clusters = initClustering.getClustersInArrayFormat();
 		
-		for(int i=1; i<=sourceClusterIds.length; i++){
-			int sourceClusterId = sourceClusterIds[i-1];
-			int nbNode = sourceClusterSizes[i-1];
-			List<int[]> combNodeIds = Combination.generate(clusters.get(sourceClusterId-1), nbNode);
-			
-
-			ArrayList<ArrayList<TNode>> newSelNodesList = new ArrayList<ArrayList<TNode>>();
-			for(int[] nodeIds : combNodeIds){
-				// nodeIds : {2,3,5,7,8,9}
-				ArrayList<TNode> selNodes = new ArrayList<>();
-
-				boolean ok = true;
-				for(int j=0; j<nodeIds.length; j++){
-					TNode node = new TNode(nodeIds[j],sourceClusterId,-1, new ArrayList<>());
-					
-					
-					// =========================
-					selNodes.add(node);
-				}
-				if(ok)
-					newSelNodesList.add(selNodes);
-				
+		// The moving nodes must be connected (see the pruning filter 'SOURCE_CONNECTIVITY'), so instead of generating all the combinations of nodes
+		//	in each source cluster and rejecting the disconnected ones afterwards, we generate only the connected node subsets
+		//	of the source clusters, having 'sourceClusterSizes[i]' nodes in the i.th source cluster (see the class 'ConnectedSubsets')
+		// The nodes which cannot take part in any zero-delta operation with 'nbEdit' moving nodes are not considered (see the class 'ZeroDeltaMoveIndex')
+		int nbVertex = 0;
+		for(int sourceClusterId : sourceClusterIds)
+			nbVertex += clusters.get(sourceClusterId-1).size();
+		int[] vertices = new int[nbVertex];
+		int[] nodeToGroup = new int[n];
+		int k = 0;
+		for(int i=0; i<sourceClusterIds.length; i++){
+			for(int nodeId : clusters.get(sourceClusterIds[i]-1)){
+				if(moveIndex != null && !moveIndex.canTakePart(nodeId, nbEdit))
+					continue;
+				vertices[k++] = nodeId;
+				nodeToGroup[nodeId] = i;
 			}
-			
-			// if there are already items in 'selNodesList', we need to duplicate each item in 'selNodesList' by tempSelNodesList.size() times
-			//ArrayList<ArrayList<TNode>> combSelNodesList = new ArrayList<ArrayList<TNode>>();
-			if(allSelNodesList.size()>0){
-				// ex: newSelNodesList = {{6,7},{6,8},{7,8}} --> it is created for each source cluster and 1 item per each combination
-				// selNodesList: {{{1,2}},{{1,3}},{{2,3}}}
-				//output: {{{1,2},{6,7}},{{1,2},{6,8}},{{1,2},{7,8}}, {{1,3},{6,7}},{{1,3},{6,8}},{{1,3},{7,8}}, {{2,3},{6,7}},{{2,3},{6,8}},{{2,3},{7,8}}}
-				ArrayList<ArrayList<ArrayList<TNode>>> allSelNodesList2 = new ArrayList<ArrayList<ArrayList<TNode>>>(allSelNodesList);
-				allSelNodesList.clear();
-				for(ArrayList<TNode> newSelNodes : newSelNodesList){
-					for(ArrayList<ArrayList<TNode>> selNodesList : allSelNodesList2){
-						ArrayList<ArrayList<TNode>> selNodesList2 = new ArrayList<ArrayList<TNode>>(selNodesList);
-						selNodesList2.add(newSelNodes);
-						allSelNodesList.add(selNodesList2);
-					}
-				}
-				
-			} else { // if empty
-				// ex: newSelNodesList = {{1,2},{1,3},{2,3}}
-				// output: {{{1,2}},{{1,3}},{{2,3}}}
-				for(ArrayList<TNode> newSelNodes : newSelNodesList){
-					ArrayList<ArrayList<TNode>> temp = new ArrayList<ArrayList<TNode>>();
-					temp.add(newSelNodes);
-					allSelNodesList.add(temp);
-				}
+		}
+		nbVertex = k;
+		vertices = Arrays.copyOf(vertices, nbVertex);
+		int[] groups = new int[nbVertex];
+		Arrays.sort(vertices); // the vertex order used to generate each subset once
+		for(int j=0; j<nbVertex; j++)
+			groups[j] = nodeToGroup[vertices[j]];
+		
+		// From 'BOUNDED_GROWTH_MIN_NB_EDIT', the subsets are grown one node at a time with a lower bound on the imbalance change,
+		//	and a partial subset is abandoned as soon as no completion of it can be a zero-delta operation
+		ConnectedSubsets connectedSubsets = new ConnectedSubsets(vertices, groups, sourceClusterSizes, adjMat);
+		if(moveIndex != null && nbEdit >= BOUNDED_GROWTH_MIN_NB_EDIT){
+			ZeroDeltaMoveIndex index = moveIndex;
+			connectedSubsets.setBound((nodeIds, size) -> index.canBeCompleted(nodeIds, size, nbEdit));
+		}
+		List<int[]> subsets = connectedSubsets.generate();
+		for(int[] nodeIds : subsets){
+			// nodeIds : {2,3,5,7,8,9}, organized by source cluster
+			ArrayList<ArrayList<TNode>> selNodesList = new ArrayList<ArrayList<TNode>>(sourceClusterIds.length);
+			for(int i=0; i<sourceClusterIds.length; i++)
+				selNodesList.add(new ArrayList<TNode>(sourceClusterSizes[i]));
+			for(int nodeId : nodeIds){
+				int i = nodeToGroup[nodeId];
+				selNodesList.get(i).add(new TNode(nodeId, sourceClusterIds[i], -1, new ArrayList<>()));
 			}
-			
+			allSelNodesList.add(selNodesList);
 		}
 		
-
+		List<Runnable> actions = new ArrayList<>(allSelNodesList.size());
 		for(ArrayList<ArrayList<TNode>> selNodesList : allSelNodesList){ // by nb source cluster ?
 //			if(nbEdit > 3 && sourceClusterSizes.length>1 && sourceClusterSizes[0]==3){
 //				System.out.println("!!!");
 //			}
-			enumerateByTargetClusters(nbEdit, selNodesList, sourceClusterSizes, sourceClusterIds);
+			actions.add(() -> enumerateByTargetClusters(nbEdit, selNodesList, sourceClusterSizes, sourceClusterIds));
 		}
+		runAll(actions, NODE_SUBSET_GRAIN);
 		
 	}
 	
 	
+	
+	/**
+	 * It runs the given actions. When it is called from a subtask of 'forkJoinPool', 
+	 * 	 they are split into fork/join subtasks of 'grain' actions, which are stolen by the idle threads.
+	 *   Otherwise, they are run sequentially in their order.
+	 * 
+	 * @param actions
+	 * @param grain
+	 */
+	void runAll(List<Runnable> actions, int grain){
+		if(forkJoinPool != null && ForkJoinTask.getPool() == forkJoinPool && actions.size() > grain)
+			new ActionRangeTask(actions, 0, actions.size(), grain).invoke();
+		else {
+			for(Runnable action : actions)
+				action.run();
+		}
+	}
+	
+	
+	// A fork/join subtask running the actions in the range [lo,hi) of a list, which is split in halves until reaching 'grain' actions
+	static class ActionRangeTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		List<Runnable> actions;
+		int lo;
+		int hi;
+		int grain;
+		
+		ActionRangeTask(List<Runnable> actions_, int lo_, int hi_, int grain_){
+			actions = actions_;
+			lo = lo_;
+			hi = hi_;
+			grain = grain_;
+		}
+		
+		@Override
+		protected void compute(){
+			if(hi-lo <= grain){
+				for(int i=lo; i<hi; i++)
+					actions.get(i).run();
+			} else {
+				int mid = (lo+hi) >>> 1;
+				invokeAll(new ActionRangeTask(actions, lo, mid, grain), new ActionRangeTask(actions, mid, hi, grain));
+			}
+		}
+	}
+	
+	
+	// The scratch buffers of the connectivity tests on the moving nodes (there are at most 'maxNbEdit' of them)
+	//	and on their source and target clusters (at most 2*maxNbEdit). See the class 'BitMaskGraph'.
+	//	They are allocated once per thread, and the fork/join subtasks never fork while using them
+	static class ConnectivityBuffers {
+		int[] nodeIds;
+		long[] adjMasks;
+		int[] vertexKeys;
+		boolean[][] ignoredPairs;
+		
+		ConnectivityBuffers(int maxNbEdit){
+			nodeIds = new int[maxNbEdit];
+			adjMasks = new long[2*maxNbEdit];
+			vertexKeys = new int[2*maxNbEdit];
+			ignoredPairs = new boolean[maxNbEdit][maxNbEdit];
+		}
+	}
+	
+	
 	///////////////
 	// selSourceClusterIds: {4,5}
 	// selNodesList: [[1, 2, 3, 4], [6, 7, 8]] when nb edit is 7 (i.e. 7 nodes) and nb source cluster is 2
 	public void enumerateByTargetClusters(int nbEdit, ArrayList<ArrayList<TNode>> selNodesList, int[] sourceClusterSizes,
 			int[] selSourceClusterIds) 
 	{
+		if(isStopped())
+			return;
 		// here we decide which nodes moves into which cluster
 		//	- they can move some existing cluster
 		//	- or a new cluster
@@ -284,19 +495,26 @@ public class MyGenericEnumeration extends Thread {
 		// ==========================================================
 		// PART 1: Trying to filter before determining target cluster ids
 		// ==========================================================
-		boolean isConnectedSourceNodes = isConnectedMovingNodes_(selNodesList, this.adjMat); // not necessarily positive connectivity
-		boolean isFakeLinkConnectivity = isFakeLinkConnectivityWithInternalSourceNeighborNodes(selNodesList);
-		boolean isNonNegativeInternalNeighLinks = true;
+		// The filters of each part are applied in the order given by their statistics, see 'passesFilters()'
+		FilterContext ctx = new FilterContext(selNodesList, selSourceClusterIds, hasTwoSourceClusters);
+		int[] sourceFilterIds; // the first one is not necessarily positive connectivity
 		if(nbEdit <= 3 && !isBruteForce)
-			isNonNegativeInternalNeighLinks = isNonNegativeInternalNeighborLinksForUpTo3Edit(selNodesList); // TODO change the name: NotNegative ...
+			sourceFilterIds = filterStatistics.order(nbEdit, PruningFilterStatistics.SOURCE_CONNECTIVITY, 
+					PruningFilterStatistics.FAKE_LINK_CONNECTIVITY, PruningFilterStatistics.NON_NEGATIVE_INTERNAL_LINKS,
+					PruningFilterStatistics.ZERO_DELTA_BOUND);
+		else if(!isBruteForce)
+			sourceFilterIds = filterStatistics.order(nbEdit, PruningFilterStatistics.SOURCE_CONNECTIVITY, 
+					PruningFilterStatistics.FAKE_LINK_CONNECTIVITY, PruningFilterStatistics.ZERO_DELTA_BOUND);
+		else
+			sourceFilterIds = filterStatistics.order(nbEdit, PruningFilterStatistics.SOURCE_CONNECTIVITY, 
+					PruningFilterStatistics.FAKE_LINK_CONNECTIVITY);
 		
-		boolean ok = true;
-		
-		if(isConnectedSourceNodes && !isFakeLinkConnectivity && isNonNegativeInternalNeighLinks && ok){ // !isBruteForce && 
+		if(passesFilters(nbEdit, sourceFilterIds, null, ctx)){ // !isBruteForce && 
 		
 			ArrayList<TNode> selNodes = new ArrayList<TNode>();
 			ArrayList<int[]> allClusterIdsInterest = new ArrayList<>();
 			boolean[] isWholeClusterBoolArr = new boolean[sourceClusterSizes.length];
+			ctx.isWholeClusterBoolArr = isWholeClusterBoolArr;
 			for(int i=0; i<selNodesList.size(); i++){ // for each source cluster => selNodesList.size() is equal to nbSourceCluster
 				ArrayList<TNode> selNodesBySourceCluster = selNodesList.get(i);
 	
@@ -315,8 +533,10 @@ public class MyGenericEnumeration extends Thread {
 						allClusterIdsInterest.add(clusterIdsInterest);
 						
 					} else {
-						node.addNotEqualToConstraints(new ArrayList<Integer>(Arrays.asList(node.getClusterId()))); // a moving node can not stay in its current cluster 
-						selNodes.add(node);
+						// the node object is shared with the other node subsets (possibly processed by other threads), so we work on a copy
+						TNode newNode = new TNode(node);
+						newNode.addNotEqualToConstraints(new ArrayList<Integer>(Arrays.asList(node.getClusterId()))); // a moving node can not stay in its current cluster 
+						selNodes.add(newNode);
 						
 						int[] clusterIdsInterest = selSourceClusterIds.clone();// i.e. the cluster ids of all moving nodes, except its cluster id
 						clusterIdsInterest[i] = -1; // replace the id of the source cluster by -1, where -1 means a new cluster (not necesserily empty new one)
@@ -351,21 +571,15 @@ public class MyGenericEnumeration extends Thread {
 			}
 
 			
-			// note that the next filtering (i.e. connected comp) does not completely guarantee 'indecomposability' at this stage,
+			// note that the fake edit filtering does not completely guarantee 'indecomposability' at this stage,
 			//		because we do not know the target indexes. But it might remove some decomposable cases, so it might beneficial to call the method here
-			ArrayList<ArrayList<TNode>> updatedSelNodesList2 = updatedSelNodesList;
-			if(!isBruteForce && nbEdit <= 3)
-				updatedSelNodesList2 = filterByFakeEditTransformation(updatedSelNodesList, selSourceClusterIds, isWholeClusterBoolArr);
-			
-			
-			// ==============================
-			ArrayList<ArrayList<TNode>> updatedSelNodesList3 = updatedSelNodesList2;
-			
 			// trying to filter for 4-edit without strict condition is possible, but it will not gain much time, like 3-edit
-			if(!isBruteForce && nbEdit <= 3) 
-				updatedSelNodesList3 = filterForUnweightedGraphBeforeTargetIndexesForExternalLinksUpTo3Edit(updatedSelNodesList2, hasTwoSourceClusters);
+			ArrayList<ArrayList<TNode>> updatedSelNodesList3 = updatedSelNodesList;
+			if(!isBruteForce && nbEdit <= 3)
+				updatedSelNodesList3 = applyFilters(nbEdit, updatedSelNodesList, ctx, 
+						PruningFilterStatistics.FAKE_EDIT, PruningFilterStatistics.EXTERNAL_LINKS_UP_TO_3EDIT);
 			else if(!isBruteForce && nbEdit > 3)
-				updatedSelNodesList3 = filterForUnweightedGraphBeforeTargetIndexesForExternalLinks(updatedSelNodesList2, false);
+				updatedSelNodesList3 = applyFilters(nbEdit, updatedSelNodesList, ctx, PruningFilterStatistics.EXTERNAL_LINKS);
 
 			
 			// =============================================================================
@@ -375,63 +589,83 @@ public class MyGenericEnumeration extends Thread {
 			ArrayList<ArrayList<TNode>> updatedSelNodesList4 = updatedSelNodesList3;
 			if(okForTargetIdexes)
 				updatedSelNodesList4 = prepareSelNodesWithTargetIndexes(updatedSelNodesList3);
-						
+			
+			ArrayList<Integer> targetFilterIds = new ArrayList<Integer>();
 			if(selNodesList.size()>1 && okForTargetIdexes) // the size of selNodesList is 1, this means, all moving nodes are in the same source cluster, so they are connected by construction
-				updatedSelNodesList4 = filterByConnectedComponentInteractionConnectivity(updatedSelNodesList4); // remove decomposable Edit transformations
+				targetFilterIds.add(PruningFilterStatistics.INTERACTION_CONNECTIVITY); // remove decomposable Edit transformations
 				// TODO rename it "filterByPosConnectedComponent"
-			
-			
 			if(!isBruteForce && okForTargetIdexes && nbEdit>1)
-				updatedSelNodesList4 = filterByMVMOCorollary(updatedSelNodesList4);
-			
-			
-			ArrayList<ArrayList<TNode>> updatedSelNodesList5 = updatedSelNodesList4;
+				targetFilterIds.add(PruningFilterStatistics.MVMO);
 			if(nbEdit>3) {// TODO we will change the name 'filterByWeightSumZeroWithInternalTargetNeighborNodes'
-				updatedSelNodesList5 = filterByFakeConnectivityWithInternalTargetNeighborNodes(updatedSelNodesList4); // we do not need to do for 2edit or 3edit, because we implicitely do it in 'filterForUnweightedGraphBeforeTargetIndexesForExternalLinksUpTo3Edit()'
-				if(!isBruteForce && isSourceClusterSizesLessThanThree){ // seek for sub 2edit or sub 3edit operation for additional filtering
-					updatedSelNodesList5 = filterForUnweightedGraphBeforeTargetIndexesForExternalLinks(updatedSelNodesList5, true);
-				}
+				targetFilterIds.add(PruningFilterStatistics.FAKE_TARGET_CONNECTIVITY); // we do not need to do for 2edit or 3edit, because we implicitely do it in 'filterForUnweightedGraphBeforeTargetIndexesForExternalLinksUpTo3Edit()'
+				if(!isBruteForce && isSourceClusterSizesLessThanThree) // seek for sub 2edit or sub 3edit operation for additional filtering
+					targetFilterIds.add(PruningFilterStatistics.EXTERNAL_LINKS_AFTER_TARGET_INDEXES);
 			}
+			if(!isBruteForce && nbEdit>1)
+				targetFilterIds.add(PruningFilterStatistics.ELIGIBILITY);
+			
+			ArrayList<ArrayList<TNode>> updatedSelNodesList5 = updatedSelNodesList4;
+			if(targetFilterIds.size()>0)
+				updatedSelNodesList5 = applyFilters(nbEdit, updatedSelNodesList4, ctx, 
+						targetFilterIds.stream().mapToInt(Integer::intValue).toArray());
 			
 			
+			// Different target index assignments may describe the same edit operation (e.g. [1,2] and [2,1] for 2 unknown target clusters),
+			//	and different optimal transformations may give the same clustering (e.g. when they differ only by the ids of the new clusters).
+			//	Such duplicates are skipped here by their signature (see 'computeEditSignature()'), before the delta evaluation.
+			//	The moving nodes of this method are not processed by any other call, so the signatures are local to it.
+			Set<String> editSignatures = new HashSet<String>();
+			Set<String> transformationSignatures = new HashSet<String>();
+			
 			//System.out.println("size of 'updatedSelNodesList4':" + updatedSelNodesList4.size());
 			for(ArrayList<TNode> updatedSelNodes : updatedSelNodesList5){
 //				if(nbEdit == 5)
 //					System.out.println(updatedSelNodes);
-				boolean isEligible = true;
-				if(!isBruteForce && updatedSelNodes.size()>1)
-					isEligible = isEligibleTransformation(updatedSelNodes, false);
-				if(isEligible){					
-					ArrayList<ArrayList<TNode>> optimalTransformations = findOptimalTransformations(updatedSelNodes, selSourceClusterIds,
-							isWholeClusterBoolArr, initClusters);
-					
-					if(optimalTransformations.size()>0){
-						Set<Clustering> set = new HashSet<Clustering>();
-						if(nbEdit > 1){
+				if(!editSignatures.add(computeEditSignature(updatedSelNodes)))
+					continue; // already processed
+				
+				ArrayList<ArrayList<TNode>> optimalTransformations = findOptimalTransformations(updatedSelNodes, selSourceClusterIds,
+						isWholeClusterBoolArr, initClusters);
+				optimalTransformations.removeIf(t -> !transformationSignatures.add(computeEditSignature(t)));
+				
+				if(optimalTransformations.size()>0){
+					Set<Clustering> set = new HashSet<Clustering>();
+					if(nbEdit > 1){
 //							ArrayList<ArrayList<TNode>> subset = filterByDecomposabe1EditOptimalTransformations(optimalTransformations);
-							
-							ArrayList<ArrayList<TNode>> subset = optimalTransformations;
-							int maxNbEditForDecomposability = (int) Math.floor(nbEdit/2);
-							for(int nbEditForDecomposability=1; nbEditForDecomposability<=maxNbEditForDecomposability; nbEditForDecomposability++){
-								//System.out.println("nbEditForDecomposability: "+nbEditForDecomposability);
-								subset = filterByDecomposableEditOptimalTransformations(subset, nbEditForDecomposability);
-								if(subset.size()==0)
+						
+						ArrayList<ArrayList<TNode>> subset = optimalTransformations;
+						int maxNbEditForDecomposability = (int) Math.floor(nbEdit/2);
+						for(int nbEditForDecomposability=1; nbEditForDecomposability<=maxNbEditForDecomposability; nbEditForDecomposability++){
+							//System.out.println("nbEditForDecomposability: "+nbEditForDecomposability);
+							subset = filterByDecomposableEditOptimalTransformations(subset, nbEditForDecomposability);
+							if(subset.size()==0)
+								break;
+						}
+						
+						if(subset.size()>0){
+							set = enumerateClusterings(subset);
+						}
+					} 
+					else {
+						set = enumerateClusterings(optimalTransformations);
+					}
+					if(set.size()>0){
+						//foundClusterings.addAll(set);
+						ArrayList<Clustering> foundClusteringsByNbEdit = foundClusteringsByNbEditMap.get(nbEdit);
+						synchronized(foundClusteringsByNbEdit){ // the fork/join subtasks may add their results concurrently
+							for(Clustering c : set){
+								if(discoveredFingerprints != null && !discoveredFingerprints.add(c))
+									continue; // already discovered
+								if(!consumeSolutionBudget()){
+									if(discoveredFingerprints != null)
+										discoveredFingerprints.remove(c); // it is not kept, so it can still be discovered by another enumeration
 									break;
+								}
+								foundClusteringsByNbEdit.add(c);
 							}
-							
-							if(subset.size()>0){
-								set = enumerateClusterings(subset);
-							}
-						} 
-						else {
-							set = enumerateClusterings(optimalTransformations);
-						}
-						if(set.size()>0){
-							//foundClusterings.addAll(set);
-							foundClusteringsByNbEditMap.get(nbEdit).addAll(set);
 						}
-						
 					}
+					
 				}
 			}
 			
@@ -443,6 +677,162 @@ public class MyGenericEnumeration extends Thread {
 
 
 	
+	/**
+	 * It returns a canonical signature of the edit operation described by 'selNodes', i.e. the moving nodes sorted by id,
+	 *   each of them with its target cluster id when this is an existing cluster of the initial clustering. 
+	 *   The other target clusters (the unknown ones, identified by their target index, and the new ones) are anonymous: 
+	 *   they are relabeled in the order of their first appearance.
+	 * Two edit operations having the same signature move the same nodes into the same target partition.
+	 * 
+	 * @param selNodes
+	 * @return
+	 */
+	public String computeEditSignature(ArrayList<TNode> selNodes){
+		int nbCluster = initClustering.getNbCluster();
+		TNode[] nodes = selNodes.toArray(new TNode[selNodes.size()]);
+		Arrays.sort(nodes, (a, b) -> Integer.compare(a.getNodeId(), b.getNodeId()));
+		
+		int[] groupKeys = new int[nodes.length]; // the anonymous target clusters in the order of their first appearance
+		int nbGroup = 0;
+		StringBuilder sb = new StringBuilder();
+		for(TNode node : nodes){
+			sb.append(node.getNodeId());
+			int targetClusterId = node.getTargetClusterId();
+			if(targetClusterId != -1 && targetClusterId <= nbCluster){
+				sb.append('>').append(targetClusterId);
+			} else {
+				int key = (targetClusterId == -1 ? -node.getTargetIndex() : targetClusterId); // negative keys for the target indexes
+				int label = 0;
+				while(label<nbGroup && groupKeys[label]!=key)
+					label++;
+				if(label == nbGroup)
+					groupKeys[nbGroup++] = key;
+				sb.append('#').append(label);
+			}
+			sb.append(',');
+		}
+		return(sb.toString());
+	}
+	
+	
+	
+	/**
+	 * It returns false if the move cost of a moving node cannot be compensated by its links with the other moving nodes,
+	 *   so the moving nodes cannot form a zero-delta operation, whatever their target clusters (see the class 'ZeroDeltaMoveIndex').
+	 * 
+	 * @param selNodesList
+	 * @return
+	 */
+	public boolean isCompensableMovingNodes(ArrayList<ArrayList<TNode>> selNodesList){
+		if(moveIndex == null)
+			return(true);
+		int[] nodeIds = connBuffers.get().nodeIds;
+		int size = 0;
+		for(ArrayList<TNode> selNodes : selNodesList)
+			for(TNode node : selNodes)
+				nodeIds[size++] = node.getNodeId();
+		return(moveIndex.isCompensable(nodeIds, size));
+	}
+	
+	
+	
+	// The data of the current source node subset which are needed by the pruning filters (see 'passesFilter()')
+	static class FilterContext {
+		ArrayList<ArrayList<TNode>> selNodesList; // the moving nodes organized by source cluster
+		int[] selSourceClusterIds;
+		boolean[] isWholeClusterBoolArr; // known only after part 1
+		boolean hasTwoSourceClusters;
+		
+		FilterContext(ArrayList<ArrayList<TNode>> selNodesList_, int[] selSourceClusterIds_, boolean hasTwoSourceClusters_){
+			selNodesList = selNodesList_;
+			selSourceClusterIds = selSourceClusterIds_;
+			hasTwoSourceClusters = hasTwoSourceClusters_;
+		}
+	}
+	
+	
+	
+	/**
+	 * It returns true if the node subset passes the pruning filter 'filterId' (see the class 'PruningFilterStatistics' for the filter ids).
+	 * The filters of part 1 (source connectivity, fake link connectivity, non-negative internal links and zero-delta bound) 
+	 *   are applied to 'ctx.selNodesList', so 'selNodes' is not used for them.
+	 * 
+	 * @param filterId
+	 * @param selNodes
+	 * @param ctx
+	 * @return
+	 */
+	public boolean passesFilter(int filterId, ArrayList<TNode> selNodes, FilterContext ctx){
+		switch(filterId){
+			case PruningFilterStatistics.SOURCE_CONNECTIVITY:
+				return(isConnectedMovingNodes_(ctx.selNodesList, null));
+			case PruningFilterStatistics.FAKE_LINK_CONNECTIVITY:
+				return(!isFakeLinkConnectivityWithInternalSourceNeighborNodes(ctx.selNodesList));
+			case PruningFilterStatistics.NON_NEGATIVE_INTERNAL_LINKS:
+				return(isNonNegativeInternalNeighborLinksForUpTo3Edit(ctx.selNodesList));
+			case PruningFilterStatistics.FAKE_EDIT:
+				return(!isFakeEditTransformation(selNodes, ctx.selSourceClusterIds, ctx.isWholeClusterBoolArr));
+			case PruningFilterStatistics.EXTERNAL_LINKS_UP_TO_3EDIT:
+				return(satisfiesExternalLinkSignsUpTo3Edit(selNodes, ctx.hasTwoSourceClusters));
+			case PruningFilterStatistics.EXTERNAL_LINKS:
+				return(satisfiesExternalLinkSigns(selNodes, false));
+			case PruningFilterStatistics.INTERACTION_CONNECTIVITY:
+				return(isInteractionConnected(selNodes));
+			case PruningFilterStatistics.MVMO:
+				return(satisfiesMVMOCorollary(selNodes));
+			case PruningFilterStatistics.FAKE_TARGET_CONNECTIVITY:
+				return(!isFakeConnectivityWithInternalTargetNeighborNodes(selNodes));
+			case PruningFilterStatistics.EXTERNAL_LINKS_AFTER_TARGET_INDEXES:
+				return(satisfiesExternalLinkSigns(selNodes, true));
+			case PruningFilterStatistics.ELIGIBILITY:
+				return(isEligibleTransformation(selNodes, false));
+			case PruningFilterStatistics.ZERO_DELTA_BOUND:
+				return(isCompensableMovingNodes(ctx.selNodesList));
+			default:
+				throw new IllegalArgumentException("unknown pruning filter: " + filterId);
+		}
+	}
+	
+	
+	
+	/**
+	 * It applies the filters 'orderedFilterIds' in this order to a node subset, and stops at the first one pruning it.
+	 * Each filter is a test on a single node subset, so the order does not change the result, only the time spent:
+	 *   the hit rate and the cost of each filter are recorded, and 'PruningFilterStatistics.order()' puts 
+	 *   the cheap and selective filters first.
+	 * 
+	 * @param nbEdit
+	 * @param orderedFilterIds
+	 * @param selNodes
+	 * @param ctx
+	 * @return true if the node subset passes all the filters
+	 */
+	public boolean passesFilters(int nbEdit, int[] orderedFilterIds, ArrayList<TNode> selNodes, FilterContext ctx){
+		for(int filterId : orderedFilterIds){
+			long startTime = System.nanoTime();
+			boolean ok = passesFilter(filterId, selNodes, ctx);
+			filterStatistics.record(nbEdit, filterId, System.nanoTime()-startTime, !ok);
+			if(!ok)
+				return(false);
+		}
+		return(true);
+	}
+	
+	
+	
+	// It keeps the node subsets of 'selNodesList' which pass all the filters 'filterIds', see 'passesFilters()'
+	public ArrayList<ArrayList<TNode>> applyFilters(int nbEdit, ArrayList<ArrayList<TNode>> selNodesList, FilterContext ctx, int... filterIds){
+		int[] orderedFilterIds = filterStatistics.order(nbEdit, filterIds);
+		ArrayList<ArrayList<TNode>> collector = new ArrayList<ArrayList<TNode>>();
+		for(ArrayList<TNode> selNodes : selNodesList){
+			if(passesFilters(nbEdit, orderedFilterIds, selNodes, ctx))
+				collector.add(selNodes);
+		}
+		return(collector);
+	}
+	
+	
+	
 	public ArrayList<ArrayList<TNode>> prepareSelNodesWithTargetIndexes(ArrayList<ArrayList<TNode>> selNodesList){
 		ArrayList<ArrayList<TNode>> collector = new ArrayList<ArrayList<TNode>>();
 		ArrayList<ArrayList<TNode>> collector_known = new ArrayList<ArrayList<TNode>>();
@@ -475,43 +865,23 @@ public class MyGenericEnumeration extends Thread {
 			
 			if(nbUnknown>0){
 				
-				for(int nbPossibleGroups=1; nbPossibleGroups<=nbUnknown; nbPossibleGroups++){
-					List<int[]> result = UniquePartitionSize.generate(nbUnknown, nbPossibleGroups);
-					
-					// ========================================
-					for(int[] partitionSize : result){ // let say partitionSize = [3,1] for nbPossibleGroups=2
-						// nodeIndexesUnknown.stream().mapToInt(Integer::intValue).toArray()
-						List<ArrayList<int[]>> indexesListByPartitionSize = helperAllPossibleTargetIndexesByComb(nbUnknown, partitionSize);
-						// an ex of 'indexesListByPartitionSize': [ [[0],[1,2],[3,4]], [[0],[1,3],[2,4]] ] for nbUnknown=5 and partitionSize=[1,2,2]
-						// [[0, 1]] for nbUnknown=2 and partitionSize=[2]
-						
-
-						for(ArrayList<int[]> indexesByPartitionSize : indexesListByPartitionSize ){
-							ArrayList<TNode> updatedSelNodes = new ArrayList<>();
-							for(TNode node : selNodes){ // deep copy
-								TNode newNode = new TNode(node);
-								newNode.addNotEqualToConstraints(uniqueTargetClusterIds2);
-								updatedSelNodes.add(newNode);
-							}
-							
-							
-							for(int targetIndex=1; targetIndex<=partitionSize.length; targetIndex++){
-								int[] indArr = indexesByPartitionSize.get(targetIndex-1);
-								//if(ArrayOperations.isIdentical(indArr, ArrayOperations.rep(1,partitionSize[targetIndex-1])))
-								
-								for(int i : indArr){
-									updatedSelNodes.get(nodeIndexesUnknown.get(i)).setTargetIndex(targetIndex);
-								}
-							}
-							
-							collector.add(updatedSelNodes);
-						}
+				// all the ways of assigning target indexes to the unknown nodes, see 'EditPatternTables.getTargetIndexes()'
+				// an ex: [[1,1],[1,2]] for nbUnknown=2
+				EditPatternTables.Table targetIndexesTable = EditPatternTables.getTargetIndexes(nbUnknown);
+				for(int r=0; r<targetIndexesTable.nbRow; r++){
+					ArrayList<TNode> updatedSelNodes = new ArrayList<>();
+					for(TNode node : selNodes){ // deep copy
+						TNode newNode = new TNode(node);
+						newNode.addNotEqualToConstraints(uniqueTargetClusterIds2);
+						updatedSelNodes.add(newNode);
 					}
-					// ========================================
 					
+					for(int i=0; i<nbUnknown; i++)
+						updatedSelNodes.get(nodeIndexesUnknown.get(i)).setTargetIndex(targetIndexesTable.get(r, i));
+					
+					collector.add(updatedSelNodes);
 				}
 				
-				
 			} else {
 				collector_known.add(selNodes);
 			}
@@ -523,50 +893,9 @@ public class MyGenericEnumeration extends Thread {
 	
 	
 	
+	// See 'EditPatternTables.helperAllPossibleTargetIndexesByComb()'
 	public List<ArrayList<int[]>> helperAllPossibleTargetIndexesByComb(int nbUnknown, int[] partitionSize){
-		List<ArrayList<int[]>> collector = new ArrayList<ArrayList<int[]>>();
-		
-		int[] targetIndexes = ArrayOperations.seq(0, nbUnknown-1);
-		
-		for(int nbNodeInPartition : partitionSize){ // let say partitionSize = [3,1] for nbPossibleGroups=2
-			
-			if(collector.size()>0){
-				List<ArrayList<int[]>> collector2 = new ArrayList<ArrayList<int[]>>();
-
-				// ex: collector: {{{1,3}},{{2,5}}}
-				for(ArrayList<int[]> arrayOfExistingIndexes : collector){
-					int[] existingIndexes = ArrayOperations.mergeMultipleArrays(arrayOfExistingIndexes);
-					int[] remainingTargetIndexes = ArrayOperations.removeMultipleElements(targetIndexes, existingIndexes);
-					List<int[]> combTargetIndexes = Combination.generate(remainingTargetIndexes, nbNodeInPartition);
-					// ex: 	existingIndexes: {1,3}, combNodeIndexesToMove: {{2,4},{2,5}}
-					// output: {{{1,3},{2,4}},{{1,3},{2,5}}}
-					
-					for(int[] inds : combTargetIndexes){
-						ArrayList<int[]> newArray = new ArrayList<int[]>(arrayOfExistingIndexes);
-						newArray.add(inds);
-						collector2.add(newArray);
-					}
-					
-				}
-				
-				collector.clear();
-				collector = new ArrayList<ArrayList<int[]>>(collector2);
-				
-				
-			} else {
-				List<int[]> combIndexes = Combination.generate(targetIndexes,nbNodeInPartition); //ex: combNodeIds=[[1,2],[1,3],[2,3]]
-				for(int[] indexes : combIndexes){
-					ArrayList<int[]> temp = new ArrayList<>();
-					temp.add(indexes);
-					collector.add(temp);
-				}
-			}
-			
-			
-		}
-		
-		
-		return(collector);
+		return(EditPatternTables.helperAllPossibleTargetIndexesByComb(nbUnknown, partitionSize));
 	}
 	
 	
@@ -628,39 +957,52 @@ public class MyGenericEnumeration extends Thread {
 	 * It is a helper method in order to apply the pruning strategy, so-called "edge connectivity", onto a list of node subsets.
 	 * 	  This method is used for incomplete networks and for d-edit operations with d>=2.
 	 * 
+	 * The test is performed on the subgraph induced by the 'size' first nodes of 'nodeIds' (see the class 'BitMaskGraph'), 
+	 *    so it costs O(d^2) and does not allocate anything.
+	 * 'ignoredPairs' plays the role of a modified adjacency matrix: when 'ignoredPairs[i][j]' is true (with i<j),
+	 *    the link between 'nodeIds[i]' and 'nodeIds[j]' is considered as missing. It can be null when no link is ignored.
+	 * 
 	 * See the method 'isConnectedMovingNodes_()'
 	 * 
-	 * @param selNodesList
-	 * @param adjMat
+	 * @param nodeIds
+	 * @param size
+	 * @param ignoredPairs
 	 * 
-	 * @return collector: a list of node subsets which satisfy the "edge connectivity" property.
+	 * @return true if the moving nodes are connected
 	 */
-	public boolean isConnectedMovingNodes(ArrayList<TNode> selNodes, double[][] adjMat){
-		
-		// build the subgraph where size>1: add an edge when there is a real link
-		UndirectedGraph g = new UndirectedGraph(selNodes.size());
-		HashMap<Integer, Integer> NewIdMap = new HashMap<>(); 
+	public boolean isConnectedMovingNodes(int[] nodeIds, int size, boolean[][] ignoredPairs){
+		if(size<=1) // a cluster having only 1 node is by construction connected here
+			return(true);
 		
-		// source cluster
-		if(selNodes.size()>1){ // a cluster having only 1 node is by construction connected here
-			for(int i=0; i<selNodes.size(); i++)
-				NewIdMap.put(selNodes.get(i).nodeId, i);
-			
-			for(int i=0; i<(selNodes.size()-1); i++){
-				TNode node = selNodes.get(i);
-				for(int j=i+1; j<selNodes.size(); j++){
-					TNode otherNode = selNodes.get(j);
-					if(adjMat[node.getNodeId()][otherNode.getNodeId()]!=0.0){
-						g.addEdge(NewIdMap.get(node.nodeId), NewIdMap.get(otherNode.nodeId));
-					}
-				}
+		// the subgraph induced by the moving nodes, one bit mask per node
+		long[] adjMasks = connBuffers.get().adjMasks;
+		BitMaskGraph.clear(adjMasks, size);
+		for(int a=0; a<size-1; a++){
+			double[] row = adjMat[nodeIds[a]];
+			for(int b=a+1; b<size; b++){
+				if(row[nodeIds[b]]!=0.0 && (ignoredPairs == null || !ignoredPairs[a][b]))
+					BitMaskGraph.addEdge(adjMasks, a, b);
 			}
-			
-			if(!g.isSingleConnectedComponent())
-				return(false);
 		}
-		
-		return(true);
+		return(BitMaskGraph.isConnected(adjMasks, size));
+	}
+	
+	
+	
+	/**
+	 * See the method 'isConnectedMovingNodes(int[], int, boolean[][])'
+	 * 
+	 * @param selNodes
+	 * @param ignoredPairs: indexed by the positions of the nodes in 'selNodes'
+	 * 
+	 * @return true if the moving nodes are connected
+	 */
+	public boolean isConnectedMovingNodes(ArrayList<TNode> selNodes, boolean[][] ignoredPairs){
+		int[] connNodeIds = connBuffers.get().nodeIds;
+		int size = 0;
+		for(TNode node : selNodes)
+			connNodeIds[size++] = node.getNodeId();
+		return(isConnectedMovingNodes(connNodeIds, size, ignoredPairs));
 	}
 	
 	
@@ -673,16 +1015,18 @@ public class MyGenericEnumeration extends Thread {
 	 * See Property 3 in Section 6.2 of the reference article for more details.
 	 * 
 	 * @param selNodesList
-	 * @param adjMat
+	 * @param ignoredPairs: indexed by the positions of the nodes in the concatenation of the lists of 'selNodesList'
 	 * 
-	 * @return collector: a list of node subsets which satisfy the "edge connectivity" property.
+	 * @return true if the moving nodes satisfy the "edge connectivity" property.
 	 */
-	public boolean isConnectedMovingNodes_(ArrayList<ArrayList<TNode>> selNodesList, double[][] adjMat){
-		ArrayList<TNode> selNodes = new ArrayList<>();
+	public boolean isConnectedMovingNodes_(ArrayList<ArrayList<TNode>> selNodesList, boolean[][] ignoredPairs){
+		int[] connNodeIds = connBuffers.get().nodeIds;
+		int size = 0;
 		for(ArrayList<TNode> selNodes2 : selNodesList){ // sel nodes are organized by source cluster
-			selNodes.addAll(selNodes2);
+			for(TNode node : selNodes2)
+				connNodeIds[size++] = node.getNodeId();
 		}
-		return(isConnectedMovingNodes(selNodes, adjMat));
+		return(isConnectedMovingNodes(connNodeIds, size, ignoredPairs));
 	}
 	
 	
@@ -735,9 +1079,12 @@ public class MyGenericEnumeration extends Thread {
 	public boolean isFakeLinkConnectivityWithInternalSourceNeighborNodes(ArrayList<ArrayList<TNode>> selNodesList){
 
 		
+		boolean[][] connIgnoredPairs = connBuffers.get().ignoredPairs;
+		int offset = 0; // position of the first node of the current source cluster in the concatenation of 'selNodesList'
 		for(ArrayList<TNode> selNodes : selNodesList){ // sel nodes are organized by source cluster
 			if(selNodes.size()>1){ // a cluster having only 1 node is by construction connected here
-				for(TNode node : selNodes){ // for each node being in one of the source clusters
+				for(int i=0; i<selNodes.size(); i++){ // for each node being in one of the source clusters
+					TNode node = selNodes.get(i);
 					double sum = 0.0;
 					for(TNode otherNode : selNodes){
 						if(node.nodeId != otherNode.nodeId){
@@ -745,15 +1092,18 @@ public class MyGenericEnumeration extends Thread {
 						}
 					}
 					if(sum == 0.0){
-						double[][] adjMatCopy = java.util.Arrays.stream(adjMat).map(el -> el.clone()).toArray(double[][]::new);
-						for(TNode otherNode : selNodes)
-							adjMatCopy[node.getNodeId()][otherNode.getNodeId()] = 0.0;
-						boolean isConn = !isConnectedMovingNodes_(selNodesList, adjMatCopy);
+						// ignore the links going from 'node' to the other nodes of its source cluster
+						for(int j=0; j<selNodes.size(); j++)
+							connIgnoredPairs[offset+i][offset+j] = true;
+						boolean isConn = !isConnectedMovingNodes_(selNodesList, connIgnoredPairs);
+						for(int j=0; j<selNodes.size(); j++)
+							connIgnoredPairs[offset+i][offset+j] = false;
 						if(!isConn)
 							return(true);
 					}
 				}
 			}
+			offset += selNodes.size();
 		}
 		
 		return(false);
@@ -764,323 +1114,319 @@ public class MyGenericEnumeration extends Thread {
 	
 	
 	/**
-	 * It applies the pruning strategy, so-called "fake edge connectivity", onto a list of node subsets and returns those which satisfy this property.
+	 * It applies the pruning strategy, so-called "fake edge connectivity", onto a node subset.
 	 * 	  This method is used for d-edit operations with d>=4.
 	 * 	  We do not need to do for 2edit or 3edit, because we implicitly do it in 'filterForUnweightedGraphBeforeTargetIndexesForExternalLinksUpTo3Edit()'
 	 * 
 	 * See Property 4.b in Section 6.2 of the reference article for more details.
 	 * 
-	 * @param selNodesList
+	 * @param selNodes
 	 * 
-	 * @return collector: a list of node subsets which satisfy the "fake edge connectivity" property.
+	 * @return true if the fake edge connectivity is detected, i.e. the node subset does not satisfy the "fake edge connectivity" property.
 	 */
-	public ArrayList<ArrayList<TNode>> filterByFakeConnectivityWithInternalTargetNeighborNodes(ArrayList<ArrayList<TNode>> selNodesList){
-		ArrayList<ArrayList<TNode>> collector = new ArrayList<ArrayList<TNode>>();
+	public boolean isFakeConnectivityWithInternalTargetNeighborNodes(ArrayList<TNode> selNodes){
+		boolean[][] connIgnoredPairs = connBuffers.get().ignoredPairs;
 		
-		for(ArrayList<TNode> selNodes : selNodesList){
-			
-			HashMap<Integer, ArrayList<TNode>> targetClusterIdCounterMap = new HashMap<>();
-			for(TNode node : selNodes){
-				// reorganize moving nodes by their target cluster
-				if(node.targetClusterId != -1){
-					if(!targetClusterIdCounterMap.containsKey(node.targetClusterId))
-						targetClusterIdCounterMap.put(node.targetClusterId, new ArrayList<TNode>());
-					targetClusterIdCounterMap.get(node.targetClusterId).add(node);
-				}
-				if(node.targetClusterId == -1 && node.targetIndex != -1){
-					if(!targetClusterIdCounterMap.containsKey(-node.targetIndex)) // I put the sign 'minus' to distinguish from the other target clusters
-						targetClusterIdCounterMap.put(-node.targetIndex, new ArrayList<TNode>());
-					 targetClusterIdCounterMap.get(-node.targetIndex).add(node);
-				}
+		HashMap<Integer, ArrayList<TNode>> targetClusterIdCounterMap = new HashMap<>();
+		for(TNode node : selNodes){
+			// reorganize moving nodes by their target cluster
+			if(node.targetClusterId != -1){
+				if(!targetClusterIdCounterMap.containsKey(node.targetClusterId))
+					targetClusterIdCounterMap.put(node.targetClusterId, new ArrayList<TNode>());
+				targetClusterIdCounterMap.get(node.targetClusterId).add(node);
 			}
-			
-			// for instance
-			// targetClusterIdCounterMap:
-			// {-1=[(nodeId:22)], 4=[(nodeId:15), (nodeId:21), (nodeId:34)], 6=[(nodeId:13)]}
-			// sourceClusterIdCounterMap:
-			// {4=[(nodeId:13), (nodeId:22)], 5=[(nodeId:15)], 6=[(nodeId:21), (nodeId:34)]}
-			
-			// ========================
-			
-			boolean ok = true;
-			for(Integer key : targetClusterIdCounterMap.keySet()){ // for each target cluster of the moving vertices
-				ArrayList<TNode> nodeListSameTarget = targetClusterIdCounterMap.get(key);
-				if(nodeListSameTarget.size()>1){ // make sure that there is at least one other node moving into the same target
-					//int maxSubsetSize = (int) Math.floor(nodeListSameTarget.size()/2);
-					int maxSubsetSize = 1; // use in this way to speed up
+			if(node.targetClusterId == -1 && node.targetIndex != -1){
+				if(!targetClusterIdCounterMap.containsKey(-node.targetIndex)) // I put the sign 'minus' to distinguish from the other target clusters
+					targetClusterIdCounterMap.put(-node.targetIndex, new ArrayList<TNode>());
+				 targetClusterIdCounterMap.get(-node.targetIndex).add(node);
+			}
+		}
+		
+		// for instance
+		// targetClusterIdCounterMap:
+		// {-1=[(nodeId:22)], 4=[(nodeId:15), (nodeId:21), (nodeId:34)], 6=[(nodeId:13)]}
+		// sourceClusterIdCounterMap:
+		// {4=[(nodeId:13), (nodeId:22)], 5=[(nodeId:15)], 6=[(nodeId:21), (nodeId:34)]}
+		
+		// ========================
+		
+		boolean ok = true;
+		for(Integer key : targetClusterIdCounterMap.keySet()){ // for each target cluster of the moving vertices
+			ArrayList<TNode> nodeListSameTarget = targetClusterIdCounterMap.get(key);
+			if(nodeListSameTarget.size()>1){ // make sure that there is at least one other node moving into the same target
+				//int maxSubsetSize = (int) Math.floor(nodeListSameTarget.size()/2);
+				int maxSubsetSize = 1; // use in this way to speed up
 
-					for(int subsetSize=1; subsetSize<=maxSubsetSize; subsetSize++){
-						int[] indexs = ArrayOperations.seq(0, nodeListSameTarget.size()-1);
-						List<int[]> combinations = Combination.generate(indexs, subsetSize);
-						
-						for(int[] comb : combinations){ // the size of 'comb' is 'subsetSize'
-							ArrayList<TNode> nodeSubListSameTarget = new ArrayList<TNode>();
-							ArrayList<TNode> otherSubListSameTarget = new ArrayList<TNode>(nodeListSameTarget);
-							for(int i=0; i<subsetSize; i++){
-								nodeSubListSameTarget.add(nodeListSameTarget.get(comb[i]));
-								otherSubListSameTarget.remove(nodeListSameTarget.get(comb[i]));
-							}
-							// check
-							double sum = 0.0;
-							for(TNode node : nodeSubListSameTarget){ // for each node
-								for(TNode otherNode : otherSubListSameTarget)// for each other node
-									sum += adjMat[node.getNodeId()][otherNode.getNodeId()];
-							}
-							if(sum == 0.0){
-								double[][] adjMatCopy = java.util.Arrays.stream(adjMat).map(el -> el.clone()).toArray(double[][]::new);
-								for(TNode node : nodeSubListSameTarget){ // for each node
-									for(TNode otherNode : otherSubListSameTarget)// for each other node
-										adjMatCopy[node.getNodeId()][otherNode.getNodeId()] = 0.0;
-								}
-								boolean isConn = !isConnectedMovingNodes(selNodes, adjMatCopy);
-								if(!isConn){
-									ok = false;
-									break;
-								}
+				for(int subsetSize=1; subsetSize<=maxSubsetSize; subsetSize++){
+					int[] indexs = ArrayOperations.seq(0, nodeListSameTarget.size()-1);
+					List<int[]> combinations = Combination.generate(indexs, subsetSize);
+					
+					for(int[] comb : combinations){ // the size of 'comb' is 'subsetSize'
+						ArrayList<TNode> nodeSubListSameTarget = new ArrayList<TNode>();
+						ArrayList<TNode> otherSubListSameTarget = new ArrayList<TNode>(nodeListSameTarget);
+						for(int i=0; i<subsetSize; i++){
+							nodeSubListSameTarget.add(nodeListSameTarget.get(comb[i]));
+							otherSubListSameTarget.remove(nodeListSameTarget.get(comb[i]));
+						}
+						// check
+						double sum = 0.0;
+						for(TNode node : nodeSubListSameTarget){ // for each node
+							for(TNode otherNode : otherSubListSameTarget)// for each other node
+								sum += adjMat[node.getNodeId()][otherNode.getNodeId()];
+						}
+						if(sum == 0.0){
+							// ignore the links going from 'nodeSubListSameTarget' to 'otherSubListSameTarget'
+							setIgnoredPairs(selNodes, nodeSubListSameTarget, otherSubListSameTarget, true);
+							boolean isConn = !isConnectedMovingNodes(selNodes, connIgnoredPairs);
+							setIgnoredPairs(selNodes, nodeSubListSameTarget, otherSubListSameTarget, false);
+							if(!isConn){
+								ok = false;
+								break;
 							}
 						}
-						if(!ok)
-							break;
 					}
+					if(!ok)
+						break;
 				}
-				if(!ok)
-					break;
 			}
-			if(ok)
-				collector.add(selNodes);
+			if(!ok)
+				break;
+		}
+		return(!ok);
+	}
+	
+	
+	
+	// It marks (or unmarks) in 'connIgnoredPairs' the links going from 'fromNodes' to 'toNodes', based on their positions in 'selNodes'
+	private void setIgnoredPairs(ArrayList<TNode> selNodes, ArrayList<TNode> fromNodes, ArrayList<TNode> toNodes, boolean value){
+		boolean[][] connIgnoredPairs = connBuffers.get().ignoredPairs;
+		for(TNode node : fromNodes){
+			int i = selNodes.indexOf(node);
+			for(TNode otherNode : toNodes)
+				connIgnoredPairs[i][selNodes.indexOf(otherNode)] = value;
 		}
-		
-		return(collector);
 	}
 	
 	
 	
 	
 	/**
-	 * It applies the pruning strategy, so-called "non-min-edit operation", onto a list of node subsets and returns those which satisfy this property.
+	 * It applies the pruning strategy, so-called "non-min-edit operation", onto a node subset.
 	 * 	  This method is used for d-edit operations with d>=1.
 	 * 
 	 * See Property 1 in Section 6.1 of the reference article for more details.
 	 * 
-	 * @param selNodesList
+	 * @param selNodes
+	 * @param selSourceClusterIds
+	 * @param isWholeClusterBoolArr
 	 * 
-	 * @return collector: a list of node subsets which satisfy the "Fake edge connectivity" property.
+	 * @return true if it is a fake edit transformation, i.e. the node subset does not satisfy the "non-min-edit operation" property.
 	 */
-	public ArrayList<ArrayList<TNode>> filterByFakeEditTransformation(ArrayList<ArrayList<TNode>> selNodesList,
-			int[] selSourceClusterIds, boolean[] isWholeClusterBoolArr){
-		ArrayList<ArrayList<TNode>> collector = new ArrayList<ArrayList<TNode>>();
-		
+	public boolean isFakeEditTransformation(ArrayList<TNode> selNodes, int[] selSourceClusterIds, boolean[] isWholeClusterBoolArr){
 		int[] initClusterSizes = initClustering.getClusterSizes();
+		boolean fakeEditTransformation = false; // if the target cluster of some moving nodes is known, then check it for them
+		// scenario 1 (Property 1.a): All the elements in one of the source clusters moves into the one of the other source clusters,
+		//		where all the elements of this target cluster move into another cluster.
+		for(TNode node : selNodes){ // iterate the other nodes
+			int index = ArrayOperations.whichIndex(selSourceClusterIds, node.targetClusterId); // source cluster index of the other node
+			if(index!=-1 && isWholeClusterBoolArr[index]) {
+				fakeEditTransformation = true;
+				break;
+			}
+		}
 		
-		for(ArrayList<TNode> selNodes : selNodesList){
-			boolean fakeEditTransformation = false; // if the target cluster of some moving nodes is known, then check it for them
-			// scenario 1 (Property 1.a): All the elements in one of the source clusters moves into the one of the other source clusters,
-			//		where all the elements of this target cluster move into another cluster.
-			for(TNode node : selNodes){ // iterate the other nodes
-				int index = ArrayOperations.whichIndex(selSourceClusterIds, node.targetClusterId); // source cluster index of the other node
-				if(index!=-1 && isWholeClusterBoolArr[index]) {
+		// scenario 2 (Property 1.b): this is the case where two clusters exchange some nodes. It is possible that a 3-edit operation is fake,
+		//				since exchanging the other nodes in both clusters result in a 2-edit operation.
+		//			So, the rule: the number of exchanging nodes between 2 clusters is greater than the number of the other nodes in the same 2 clusters,
+		//							then, this is a fake edit operation.
+		for(TNode node : selNodes){ // given a node, we know those 2 clusters >> source and target clusters of 'node'
+			if(node.targetClusterId != -1){
+				int nbIncomingNode = 0;
+				for(TNode otherNode : selNodes){
+					if(node.nodeId != otherNode.nodeId && node.targetClusterId == otherNode.clusterId 
+							&& node.clusterId == otherNode.targetClusterId){ // find exchanging nodes
+						nbIncomingNode += 1;
+					}
+				}
+				int remainingNumberOfNodes = initClusterSizes[node.clusterId-1]-1+initClusterSizes[node.targetClusterId-1]-nbIncomingNode;
+				if(remainingNumberOfNodes<(nbIncomingNode+1)){ // +1 for the 'node', which moves into its target cluster
 					fakeEditTransformation = true;
 					break;
 				}
 			}
-			
-			// scenario 2 (Property 1.b): this is the case where two clusters exchange some nodes. It is possible that a 3-edit operation is fake,
-			//				since exchanging the other nodes in both clusters result in a 2-edit operation.
-			//			So, the rule: the number of exchanging nodes between 2 clusters is greater than the number of the other nodes in the same 2 clusters,
-			//							then, this is a fake edit operation.
-			for(TNode node : selNodes){ // given a node, we know those 2 clusters >> source and target clusters of 'node'
-				if(node.targetClusterId != -1){
-					int nbIncomingNode = 0;
-					for(TNode otherNode : selNodes){
-						if(node.nodeId != otherNode.nodeId && node.targetClusterId == otherNode.clusterId 
-								&& node.clusterId == otherNode.targetClusterId){ // find exchanging nodes
-							nbIncomingNode += 1;
-						}
-					}
-					int remainingNumberOfNodes = initClusterSizes[node.clusterId-1]-1+initClusterSizes[node.targetClusterId-1]-nbIncomingNode;
-					if(remainingNumberOfNodes<(nbIncomingNode+1)){ // +1 for the 'node', which moves into its target cluster
-						fakeEditTransformation = true;
-						break;
-					}
-				}
-			}
-			
-			if(!fakeEditTransformation) // if it is still false
-				collector.add(selNodes);
 		}
 		
-		return(collector);
+		return(fakeEditTransformation);
 	}
 	
 	
 	
 	/**
-	 * It applies the pruning strategy, so-called "Interaction connectivity", onto a list of node subsets and returns those which satisfy the connectivity property.
+	 * It applies the pruning strategy, so-called "Interaction connectivity", onto a node subset.
 	 * 	  This method is used for d-edit operations with d>=3.
 	 * 
 	 * See Property 5 in Section 6.2 of the reference article for more details.
 	 * 
-	 * @param selNodesList
+	 * @param selNodes
 	 * 
-	 * @return collector: a list of node subsets which satisfy the "Interaction connectivity" property.
+	 * @return true if the node subset satisfies the "Interaction connectivity" property.
 	 */
-	public ArrayList<ArrayList<TNode>> filterByConnectedComponentInteractionConnectivity(ArrayList<ArrayList<TNode>> selNodesList){
-		ArrayList<ArrayList<TNode>> collector = new ArrayList<ArrayList<TNode>>();
-			
-		for(ArrayList<TNode> selNodes : selNodesList){
-			
-			if(selNodes.size()>2){
-				Map<Integer, Integer> ClusterIdToVertexIdMap = new HashMap<>();
-				int id=0; // it will be a new vertex id in the graph 'g' (in order that ids start from 1)
-				for(TNode node : selNodes){
-					if(!ClusterIdToVertexIdMap.containsKey(node.getClusterId()))
-						ClusterIdToVertexIdMap.put(node.getClusterId(), id++);
-					if(node.getTargetClusterId() != -1 && !ClusterIdToVertexIdMap.containsKey(node.getTargetClusterId())) 
-						ClusterIdToVertexIdMap.put(node.getTargetClusterId(), id++);
-					else if(node.getTargetClusterId() == -1 && node.getTargetIndex() != -1 && !ClusterIdToVertexIdMap.containsKey(-node.getTargetIndex()))
-						ClusterIdToVertexIdMap.put(-node.getTargetIndex(), id++); // I put minus sign to distinguish with other cluster ids
-				}
-				
-				UndirectedGraph g = new UndirectedGraph(ClusterIdToVertexIdMap.keySet().size());
-				
-				for(TNode node : selNodes){ // we also handle incomplete graphs
-					if(node.getTargetClusterId() == -1){
-						g.addEdge(ClusterIdToVertexIdMap.get(node.getClusterId()), ClusterIdToVertexIdMap.get(-node.getTargetIndex()));
-					}
-					else {
-						for(TNode otherNode : selNodes){
-							if(node.getNodeId() != otherNode.getNodeId()){
-								if(node.getTargetClusterId() == otherNode.getClusterId() && adjMat[node.getNodeId()][otherNode.getNodeId()]!=0.0){
-									// we ensure that when one nodes moves into a known cluster, check the existence of link
-									g.addEdge(ClusterIdToVertexIdMap.get(node.getClusterId()), ClusterIdToVertexIdMap.get(node.getTargetClusterId()));
-									break;
-								}
-							}
+	public boolean isInteractionConnected(ArrayList<TNode> selNodes){
+		if(selNodes.size()<=2) // no need to check for 1-Edit and 2-edit
+			return(true);
+		
+		// the vertices of the graph are the source and target clusters of the moving nodes. Their keys are the cluster ids,
+		//	and minus the target index for the unknown target clusters (to distinguish them from the other cluster ids)
+		ConnectivityBuffers buffers = connBuffers.get();
+		long[] adjMasks = buffers.adjMasks;
+		int[] vertexKeys = buffers.vertexKeys;
+		int nbVertex = 0;
+		for(TNode node : selNodes){
+			nbVertex = addVertexKey(vertexKeys, nbVertex, node.getClusterId());
+			if(node.getTargetClusterId() != -1) 
+				nbVertex = addVertexKey(vertexKeys, nbVertex, node.getTargetClusterId());
+			else if(node.getTargetIndex() != -1)
+				nbVertex = addVertexKey(vertexKeys, nbVertex, -node.getTargetIndex());
+		}
+		
+		BitMaskGraph.clear(adjMasks, nbVertex);
+		for(TNode node : selNodes){ // we also handle incomplete graphs
+			int u = vertexIndex(vertexKeys, nbVertex, node.getClusterId());
+			if(node.getTargetClusterId() == -1){
+				BitMaskGraph.addEdge(adjMasks, u, vertexIndex(vertexKeys, nbVertex, -node.getTargetIndex()));
+			}
+			else {
+				for(TNode otherNode : selNodes){
+					if(node.getNodeId() != otherNode.getNodeId()){
+						if(node.getTargetClusterId() == otherNode.getClusterId() && adjMat[node.getNodeId()][otherNode.getNodeId()]!=0.0){
+							// we ensure that when one nodes moves into a known cluster, check the existence of link
+							BitMaskGraph.addEdge(adjMasks, u, vertexIndex(vertexKeys, nbVertex, node.getTargetClusterId()));
+							break;
 						}
 					}
-					
 				}
-				if(g.isSingleConnectedComponent())
-					collector.add(selNodes);
-				
-			} else { // no need to check for 1-Edit and 2-edit
-				collector.add(selNodes);
 			}
 			
 		}
-		return(collector);
+		return(BitMaskGraph.isConnected(adjMasks, nbVertex));
+	}
+	
+	
+	// It adds 'key' to the first 'nbVertex' keys if it is not there yet, and returns the new number of keys
+	private static int addVertexKey(int[] vertexKeys, int nbVertex, int key){
+		for(int i=0; i<nbVertex; i++)
+			if(vertexKeys[i] == key)
+				return(nbVertex);
+		vertexKeys[nbVertex] = key;
+		return(nbVertex+1);
+	}
+	
+	
+	private static int vertexIndex(int[] vertexKeys, int nbVertex, int key){
+		for(int i=0; i<nbVertex; i++)
+			if(vertexKeys[i] == key)
+				return(i);
+		return(-1);
 	}
 	
 	
 	
 	/**
-	 * It applies the MVMO pruning strategy onto a list of node subsets and returns those which satisfy the MVMO corollary.
+	 * It applies the MVMO pruning strategy onto a node subset.
 	 *    This method is used for edit operations starting from d-edit with d>=2.
 	 * 
 	 * See Corollary 1 in Section 6.3 of the reference article for more details.
 	 * 
-	 * @param selNodesList
+	 * @param selNodes
 	 * 
-	 * @return collector: a list of node subsets which satisfy the MVMO property
+	 * @return true if the node subset satisfies the MVMO corollary
 	 */
-	public ArrayList<ArrayList<TNode>> filterByMVMOCorollary(
-			ArrayList<ArrayList<TNode>> selNodesList)
-	{
-		ArrayList<ArrayList<TNode>> collector = new ArrayList<ArrayList<TNode>>();
+	public boolean satisfiesMVMOCorollary(ArrayList<TNode> selNodes){
+		// 1) compute the base values for lhs (left hand side) and rhs (right hand side)
 
-		for(ArrayList<TNode> selNodes : selNodesList){
-			
-			// 1) compute the base values for lhs (left hand side) and rhs (right hand side)
-
-			int[] lhs = new int[selNodes.size()];
-			int[] rhs = new int[selNodes.size()];
+		int[] lhs = new int[selNodes.size()];
+		int[] rhs = new int[selNodes.size()];
 
-			int indx = 0;
-			for(TNode node : selNodes){
-				lhs[indx] = 0;
-				rhs[indx] = 0;
-				for(TNode otherNode : selNodes){
-					if(node.getNodeId() != otherNode.getNodeId()){
-						boolean afterSameCluster1 = (node.getTargetClusterId()!=-1 && node.getTargetClusterId()==otherNode.getTargetClusterId());
-						boolean afterSameCluster2 = (node.getTargetClusterId()==-1 && node.getTargetIndex()==otherNode.getTargetIndex());
-						boolean afterSameCluster = (afterSameCluster1 || afterSameCluster2);
-						
-						if(node.getClusterId() == otherNode.getClusterId())
-							lhs[indx] += adjMat[node.getNodeId()][otherNode.getNodeId()];
-						if(afterSameCluster)
-							rhs[indx] -= adjMat[node.getNodeId()][otherNode.getNodeId()];
-						if(node.getTargetClusterId() == otherNode.getClusterId())
-							lhs[indx] -= adjMat[node.getNodeId()][otherNode.getNodeId()];
-						if(node.getClusterId() == otherNode.getTargetClusterId())
-							rhs[indx] += adjMat[node.getNodeId()][otherNode.getNodeId()];
-					}
+		int indx = 0;
+		for(TNode node : selNodes){
+			lhs[indx] = 0;
+			rhs[indx] = 0;
+			for(TNode otherNode : selNodes){
+				if(node.getNodeId() != otherNode.getNodeId()){
+					boolean afterSameCluster1 = (node.getTargetClusterId()!=-1 && node.getTargetClusterId()==otherNode.getTargetClusterId());
+					boolean afterSameCluster2 = (node.getTargetClusterId()==-1 && node.getTargetIndex()==otherNode.getTargetIndex());
+					boolean afterSameCluster = (afterSameCluster1 || afterSameCluster2);
+					
+					if(node.getClusterId() == otherNode.getClusterId())
+						lhs[indx] += adjMat[node.getNodeId()][otherNode.getNodeId()];
+					if(afterSameCluster)
+						rhs[indx] -= adjMat[node.getNodeId()][otherNode.getNodeId()];
+					if(node.getTargetClusterId() == otherNode.getClusterId())
+						lhs[indx] -= adjMat[node.getNodeId()][otherNode.getNodeId()];
+					if(node.getClusterId() == otherNode.getTargetClusterId())
+						rhs[indx] += adjMat[node.getNodeId()][otherNode.getNodeId()];
 				}
-				indx++;
 			}
+			indx++;
+		}
+		
+		// 2) perform the combination & compute final rhs and lhs values & check if it is ok
+		boolean ok = true;
+		
+		// int maxNbEditForDecomposability = (int) Math.floor(selNodes.size()/2);
+		int maxNbEditForDecomposability = 1; // use this to speed up
+		for(int nbEditForDecomposability=1; nbEditForDecomposability<=maxNbEditForDecomposability; nbEditForDecomposability++){
+			int[] indexs = ArrayOperations.seq(0, selNodes.size()-1);
+			List<int[]> combinations = Combination.generate(indexs, nbEditForDecomposability);
 			
-			// 2) perform the combination & compute final rhs and lhs values & check if it is ok
-			boolean ok = true;
-			
-			// int maxNbEditForDecomposability = (int) Math.floor(selNodes.size()/2);
-			int maxNbEditForDecomposability = 1; // use this to speed up
-			for(int nbEditForDecomposability=1; nbEditForDecomposability<=maxNbEditForDecomposability; nbEditForDecomposability++){
-				int[] indexs = ArrayOperations.seq(0, selNodes.size()-1);
-				List<int[]> combinations = Combination.generate(indexs, nbEditForDecomposability);
-				
-				for(int[] comb : combinations){
-					int[] lhsCopy = Arrays.copyOf(lhs, lhs.length);
-					int[] rhsCopy = Arrays.copyOf(rhs, rhs.length);
+			for(int[] comb : combinations){
+				int[] lhsCopy = Arrays.copyOf(lhs, lhs.length);
+				int[] rhsCopy = Arrays.copyOf(rhs, rhs.length);
 
-					if(nbEditForDecomposability>1){
-						for(int i : comb){ // for each node index in 'comb'
-							TNode node = selNodes.get(i);
-							for(int j : comb){
-								if(i!=j){
-									TNode otherNode = selNodes.get(i);
-									boolean afterSameCluster1 = (node.getTargetClusterId()!=-1 && node.getTargetClusterId()==otherNode.getTargetClusterId());
-									boolean afterSameCluster2 = (node.getTargetClusterId()==-1 && node.getTargetIndex()==otherNode.getTargetIndex());
-									boolean afterSameCluster = (afterSameCluster1 || afterSameCluster2);
-									
-									if(node.getClusterId() == otherNode.getClusterId())
-										lhsCopy[i] -= adjMat[node.getNodeId()][otherNode.getNodeId()]; // we use the opposite sign to remove the effect of the 'otherNode'
-									else if(afterSameCluster)
-										rhsCopy[i] += adjMat[node.getNodeId()][otherNode.getNodeId()]; // we use the opposite sign
-									else if(node.getTargetClusterId() == otherNode.getClusterId())
-										lhsCopy[i] += adjMat[node.getNodeId()][otherNode.getNodeId()]; // we use the opposite sign
-									else if(node.getClusterId() == otherNode.getTargetClusterId())
-										rhsCopy[i] -= adjMat[node.getNodeId()][otherNode.getNodeId()]; // we use the opposite sign
-								}
+				if(nbEditForDecomposability>1){
+					for(int i : comb){ // for each node index in 'comb'
+						TNode node = selNodes.get(i);
+						for(int j : comb){
+							if(i!=j){
+								TNode otherNode = selNodes.get(i);
+								boolean afterSameCluster1 = (node.getTargetClusterId()!=-1 && node.getTargetClusterId()==otherNode.getTargetClusterId());
+								boolean afterSameCluster2 = (node.getTargetClusterId()==-1 && node.getTargetIndex()==otherNode.getTargetIndex());
+								boolean afterSameCluster = (afterSameCluster1 || afterSameCluster2);
+								
+								if(node.getClusterId() == otherNode.getClusterId())
+									lhsCopy[i] -= adjMat[node.getNodeId()][otherNode.getNodeId()]; // we use the opposite sign to remove the effect of the 'otherNode'
+								else if(afterSameCluster)
+									rhsCopy[i] += adjMat[node.getNodeId()][otherNode.getNodeId()]; // we use the opposite sign
+								else if(node.getTargetClusterId() == otherNode.getClusterId())
+									lhsCopy[i] += adjMat[node.getNodeId()][otherNode.getNodeId()]; // we use the opposite sign
+								else if(node.getClusterId() == otherNode.getTargetClusterId())
+									rhsCopy[i] -= adjMat[node.getNodeId()][otherNode.getNodeId()]; // we use the opposite sign
 							}
 						}
 					}
-					
-					int lhsFinalValue = 0;
-					int rhsFinalValue = 0;
-					for(int i : comb){ // for each node index in 'comb'
-						lhsFinalValue += lhsCopy[i];
-						rhsFinalValue += rhsCopy[i];
-					}
-					
-					// the inequality is in this form: lhs > delta > rhs
-					// Since delta can have only integer values, this is possible when the difference between lhs and rhs is at least 2
-					if(lhsFinalValue>rhsFinalValue && (lhsFinalValue-rhsFinalValue)>1){
-						ok = true;
-					} else {
-						ok = false;
-						break;
-					}
-					
 				}
-				if(!ok)
+				
+				int lhsFinalValue = 0;
+				int rhsFinalValue = 0;
+				for(int i : comb){ // for each node index in 'comb'
+					lhsFinalValue += lhsCopy[i];
+					rhsFinalValue += rhsCopy[i];
+				}
+				
+				// the inequality is in this form: lhs > delta > rhs
+				// Since delta can have only integer values, this is possible when the difference between lhs and rhs is at least 2
+				if(lhsFinalValue>rhsFinalValue && (lhsFinalValue-rhsFinalValue)>1){
+					ok = true;
+				} else {
+					ok = false;
 					break;
+				}
+				
 			}
-			
-			if(ok) // if it is still true
-				collector.add(selNodes);
-			
+			if(!ok)
+				break;
 		}
-		
-		return(collector);
+		return(ok);
 	}
 	
 	
@@ -1109,139 +1455,141 @@ public class MyGenericEnumeration extends Thread {
 			ArrayList<ArrayList<TNode>> selNodesList, boolean afterTargetIndexes)
 	{
 		ArrayList<ArrayList<TNode>> collector = new ArrayList<ArrayList<TNode>>();
-
 		for(ArrayList<TNode> selNodes : selNodesList){
-
-			int[] nbConnections = new int[selNodes.size()];
-			int[] nbIntersectionConnections = new int[selNodes.size()];
-			int indx = 0;
-			for(TNode node : selNodes){
-				int nb = 0;
-				int nbIntersections = 0;
-				
+			if(satisfiesExternalLinkSigns(selNodes, afterTargetIndexes))
+				collector.add(selNodes);
+		}
+		return(collector);
+	}
+	
+	
+	// See the method 'filterForUnweightedGraphBeforeTargetIndexesForExternalLinks()'. It processes a single node subset.
+	public boolean satisfiesExternalLinkSigns(ArrayList<TNode> selNodes, boolean afterTargetIndexes){
+		int[] nbConnections = new int[selNodes.size()];
+		int[] nbIntersectionConnections = new int[selNodes.size()];
+		int indx = 0;
+		for(TNode node : selNodes){
+			int nb = 0;
+			int nbIntersections = 0;
+			
+			for(TNode otherNode : selNodes){
+				if(node.getNodeId() != otherNode.getNodeId()){
+					
+					boolean afterSameCluster1 = (node.getTargetClusterId()!=-1 && node.getTargetClusterId()==otherNode.getTargetClusterId());
+					boolean afterSameCluster2 = (node.getTargetClusterId()==-1 && node.getTargetIndex()>0 && 
+							node.getTargetIndex()==otherNode.getTargetIndex());
+					boolean afterPossiblySameCluster = (node.getTargetClusterId()==-1 && node.getTargetIndex()<0 && 
+							node.getTargetClusterId()==otherNode.getTargetClusterId());
+					boolean afterSameCluster = (afterSameCluster1 || afterSameCluster2);
+					
+					if(node.getClusterId() == otherNode.getClusterId())
+						nb++;
+					else if(afterSameCluster)
+						nb++;
+					else if(node.getTargetClusterId() == otherNode.getClusterId())
+						nb++;
+					else if(node.getClusterId() == otherNode.getTargetClusterId())
+						nb++;
+					else if(!afterTargetIndexes && afterPossiblySameCluster)
+						nb++; // we add this, because just in case they might move into the same target cluster
+					
+					
+					if(node.getClusterId() == otherNode.getClusterId() && afterSameCluster) // when afterTargetIndexes = true
+						nbIntersections++;
+					else if(node.getClusterId() == otherNode.getClusterId() && !afterTargetIndexes && afterPossiblySameCluster)
+						nbIntersections++;
+					else if(node.getClusterId() == otherNode.getTargetClusterId() && node.getTargetClusterId() == otherNode.getClusterId())
+						nbIntersections++;
+				}
+			}
+			nbConnections[indx] = nb;
+			nbIntersectionConnections[indx] = nbIntersections;
+			indx++;
+		}
+		
+		boolean ok = true;
+		indx=-1;
+		for(TNode node : selNodes){ // for each pair of nodes interacting between them
+			indx++;
+			if(!ok)
+				break;
+			
+			// we require the edge weight between u and v to be positive or negative (cannot be empty link)
+			if((nbConnections[indx]==2 && nbIntersectionConnections[indx]==0) ||
+					(nbConnections[indx]==2 && nbIntersectionConnections[indx]==1) ||
+					(nbConnections[indx]==1 && nbIntersectionConnections[indx]==1) )
+			{
+				// for external connections
 				for(TNode otherNode : selNodes){
-					if(node.getNodeId() != otherNode.getNodeId()){
+					if(ok && node.getNodeId() != otherNode.getNodeId()){ 
+						// ensure that 2 different nodes and they are not in the same cluster
 						
 						boolean afterSameCluster1 = (node.getTargetClusterId()!=-1 && node.getTargetClusterId()==otherNode.getTargetClusterId());
 						boolean afterSameCluster2 = (node.getTargetClusterId()==-1 && node.getTargetIndex()>0 && 
 								node.getTargetIndex()==otherNode.getTargetIndex());
-						boolean afterPossiblySameCluster = (node.getTargetClusterId()==-1 && node.getTargetIndex()<0 && 
-								node.getTargetClusterId()==otherNode.getTargetClusterId());
 						boolean afterSameCluster = (afterSameCluster1 || afterSameCluster2);
 						
-						if(node.getClusterId() == otherNode.getClusterId())
-							nb++;
-						else if(afterSameCluster)
-							nb++;
-						else if(node.getTargetClusterId() == otherNode.getClusterId())
-							nb++;
-						else if(node.getClusterId() == otherNode.getTargetClusterId())
-							nb++;
-						else if(!afterTargetIndexes && afterPossiblySameCluster)
-							nb++; // we add this, because just in case they might move into the same target cluster
-						
-						
-						if(node.getClusterId() == otherNode.getClusterId() && afterSameCluster) // when afterTargetIndexes = true
-							nbIntersections++;
-						else if(node.getClusterId() == otherNode.getClusterId() && !afterTargetIndexes && afterPossiblySameCluster)
-							nbIntersections++;
-						else if(node.getClusterId() == otherNode.getTargetClusterId() && node.getTargetClusterId() == otherNode.getClusterId())
-							nbIntersections++;
-					}
-				}
-				nbConnections[indx] = nb;
-				nbIntersectionConnections[indx] = nbIntersections;
-				indx++;
-			}
-			
-			boolean ok = true;
-			indx=-1;
-			for(TNode node : selNodes){ // for each pair of nodes interacting between them
-				indx++;
-				if(!ok)
-					break;
-				
-				// we require the edge weight between u and v to be positive or negative (cannot be empty link)
-				if((nbConnections[indx]==2 && nbIntersectionConnections[indx]==0) ||
-						(nbConnections[indx]==2 && nbIntersectionConnections[indx]==1) ||
-						(nbConnections[indx]==1 && nbIntersectionConnections[indx]==1) )
-				{
-					// for external connections
-					for(TNode otherNode : selNodes){
-						if(ok && node.getNodeId() != otherNode.getNodeId()){ 
-							// ensure that 2 different nodes and they are not in the same cluster
-							
-							boolean afterSameCluster1 = (node.getTargetClusterId()!=-1 && node.getTargetClusterId()==otherNode.getTargetClusterId());
-							boolean afterSameCluster2 = (node.getTargetClusterId()==-1 && node.getTargetIndex()>0 && 
-									node.getTargetIndex()==otherNode.getTargetIndex());
-							boolean afterSameCluster = (afterSameCluster1 || afterSameCluster2);
-							
-							if(node.getClusterId() != otherNode.getClusterId()){
-								// for external connections
-								if(afterSameCluster){
-									if(adjMat[node.getNodeId()][otherNode.getNodeId()]<=0) // we want positive weight
-										ok = false;
-								} 
-								else if(node.getTargetClusterId() != otherNode.getTargetClusterId()
-										&& (node.getTargetClusterId() == otherNode.clusterId || node.clusterId == otherNode.getTargetClusterId())){
-									// target cluster ids are diff, but also 'node' moves into the other's cluster, i.e. interaction
-									if(adjMat[node.getNodeId()][otherNode.getNodeId()]>=0) // we want negative weight
-										ok = false;
-								}
-							}
-							else {
-								// for internal connections
+						if(node.getClusterId() != otherNode.getClusterId()){
+							// for external connections
+							if(afterSameCluster){
 								if(adjMat[node.getNodeId()][otherNode.getNodeId()]<=0) // we want positive weight
 									ok = false;
+							} 
+							else if(node.getTargetClusterId() != otherNode.getTargetClusterId()
+									&& (node.getTargetClusterId() == otherNode.clusterId || node.clusterId == otherNode.getTargetClusterId())){
+								// target cluster ids are diff, but also 'node' moves into the other's cluster, i.e. interaction
+								if(adjMat[node.getNodeId()][otherNode.getNodeId()]>=0) // we want negative weight
+									ok = false;
 							}
 						}
+						else {
+							// for internal connections
+							if(adjMat[node.getNodeId()][otherNode.getNodeId()]<=0) // we want positive weight
+								ok = false;
+						}
 					}
-					
 				}
-				// we require the edge weight between u and v to be positive/empty or negative/empty
-				else if((nbConnections[indx]==3 && nbIntersectionConnections[indx]==0) ||
-						(nbConnections[indx]==2 && nbIntersectionConnections[indx]==2) )
-				{
-					// for external connections
-					for(TNode otherNode : selNodes){
-						if(ok && node.getNodeId() != otherNode.getNodeId()){ 
-							// ensure that 2 different nodes and they are not in the same cluster
-							
-							boolean afterSameCluster1 = (node.getTargetClusterId()!=-1 && node.getTargetClusterId()==otherNode.getTargetClusterId());
-							boolean afterSameCluster2 = (node.getTargetClusterId()==-1 && node.getTargetIndex()>0 && 
-									node.getTargetIndex()==otherNode.getTargetIndex());
-							boolean afterSameCluster = (afterSameCluster1 || afterSameCluster2);
-							
-							if(node.getClusterId() != otherNode.getClusterId()){ // they are not in the same source cluster
-								// for external connections
-								if(afterSameCluster){
-									if(adjMat[node.getNodeId()][otherNode.getNodeId()]<0) // we do not want negative weight
-										ok = false;
-								} 
-								else if(node.getTargetClusterId() != otherNode.getTargetClusterId()
-										&& (node.getTargetClusterId() == otherNode.clusterId || node.clusterId == otherNode.getTargetClusterId())){
-									// target cluster ids are diff, but also 'node' moves into the other's cluster, i.e. interaction
-									if(adjMat[node.getNodeId()][otherNode.getNodeId()]>0) // we do not want positive weight
-										ok = false;
-								}
-							}
-							else { // they are in the same source cluster
-								// for internal connections
+				
+			}
+			// we require the edge weight between u and v to be positive/empty or negative/empty
+			else if((nbConnections[indx]==3 && nbIntersectionConnections[indx]==0) ||
+					(nbConnections[indx]==2 && nbIntersectionConnections[indx]==2) )
+			{
+				// for external connections
+				for(TNode otherNode : selNodes){
+					if(ok && node.getNodeId() != otherNode.getNodeId()){ 
+						// ensure that 2 different nodes and they are not in the same cluster
+						
+						boolean afterSameCluster1 = (node.getTargetClusterId()!=-1 && node.getTargetClusterId()==otherNode.getTargetClusterId());
+						boolean afterSameCluster2 = (node.getTargetClusterId()==-1 && node.getTargetIndex()>0 && 
+								node.getTargetIndex()==otherNode.getTargetIndex());
+						boolean afterSameCluster = (afterSameCluster1 || afterSameCluster2);
+						
+						if(node.getClusterId() != otherNode.getClusterId()){ // they are not in the same source cluster
+							// for external connections
+							if(afterSameCluster){
 								if(adjMat[node.getNodeId()][otherNode.getNodeId()]<0) // we do not want negative weight
 									ok = false;
+							} 
+							else if(node.getTargetClusterId() != otherNode.getTargetClusterId()
+									&& (node.getTargetClusterId() == otherNode.clusterId || node.clusterId == otherNode.getTargetClusterId())){
+								// target cluster ids are diff, but also 'node' moves into the other's cluster, i.e. interaction
+								if(adjMat[node.getNodeId()][otherNode.getNodeId()]>0) // we do not want positive weight
+									ok = false;
 							}
 						}
+						else { // they are in the same source cluster
+							// for internal connections
+							if(adjMat[node.getNodeId()][otherNode.getNodeId()]<0) // we do not want negative weight
+								ok = false;
+						}
 					}
-					
 				}
-
+				
 			}
-			if(ok) // if it is still true
-				collector.add(selNodes);
-			
+
 		}
-		
-		return(collector);
+		return(ok);
 	}
 	
 	
@@ -1270,81 +1618,85 @@ public class MyGenericEnumeration extends Thread {
 			ArrayList<ArrayList<TNode>> selNodesList, boolean hasTwoSourceClusters){
 		ArrayList<ArrayList<TNode>> collector = new ArrayList<ArrayList<TNode>>();
 		for(ArrayList<TNode> selNodes : selNodesList){
-			boolean ok = true;
-			boolean isExceptionalCaseFor3Edit = false;
-			int nbEdit = selNodes.size();
-			
+			if(satisfiesExternalLinkSignsUpTo3Edit(selNodes, hasTwoSourceClusters))
+				collector.add(selNodes);
+		}
+		return(collector);
+	}
+	
+	
+	// See the method 'filterForUnweightedGraphBeforeTargetIndexesForExternalLinksUpTo3Edit()'. It processes a single node subset.
+	public boolean satisfiesExternalLinkSignsUpTo3Edit(ArrayList<TNode> selNodes, boolean hasTwoSourceClusters){
+		boolean ok = true;
+		boolean isExceptionalCaseFor3Edit = false;
+		int nbEdit = selNodes.size();
+		
 
-			// =======
-			// this exceptional case occurs because we want to perform the filtering before determining target indexes 
-			//	in order to gain time
-			
-			if(nbEdit == 3 && hasTwoSourceClusters){
-				ArrayList<TNode> selNodes2 = new ArrayList<TNode>();
-				// two nodes being in the same cluster, one node moves into third node's cluster and the other moves into unknown cluster
-				// the third node moves into unknown cluster (i.e. total nb unknown target cluster = 2)
-				
-				if(selNodes.get(0).clusterId == selNodes.get(1).clusterId && selNodes.get(0).clusterId != selNodes.get(2).clusterId) {
-					// nodes 0 and 1 are in the same cluster: put them as the first two items
-					selNodes2.add(selNodes.get(0));selNodes2.add(selNodes.get(1));selNodes2.add(selNodes.get(2));
-				} 
-				else if(selNodes.get(0).clusterId == selNodes.get(2).clusterId && selNodes.get(0).clusterId != selNodes.get(1).clusterId) {
-					// nodes 0 and 2 are in the same cluster: put them as the first two items
-					selNodes2.add(selNodes.get(0));selNodes2.add(selNodes.get(2));selNodes2.add(selNodes.get(1));
-				}
-				else if(selNodes.get(1).clusterId == selNodes.get(2).clusterId && selNodes.get(0).clusterId != selNodes.get(1).clusterId) {
-					// nodes 1 and 2 are in the same cluster: put them as the first two items
-					selNodes2.add(selNodes.get(1));selNodes2.add(selNodes.get(1));selNodes2.add(selNodes.get(0));
-				}
-				
-				// ====
-				// nodes being at index 0 and 1 are in the same cluster, but the last is in a different cluster
-				if(selNodes2.get(0).targetClusterId==selNodes2.get(2).clusterId 
-						&& selNodes2.get(1).targetClusterId==selNodes2.get(2).clusterId
-						&& selNodes2.get(2).targetClusterId==selNodes2.get(0).clusterId)
-				{
-					isExceptionalCaseFor3Edit = true;
-					if(adjMat[selNodes2.get(0).getNodeId()][selNodes2.get(2).getNodeId()]>0) // we do not want positive weight outside a cluster
-						ok = false;
-					if(adjMat[selNodes2.get(1).getNodeId()][selNodes2.get(2).getNodeId()]>0) // we do not want positive weight outside a cluster
-						ok = false;
-				}
+		// =======
+		// this exceptional case occurs because we want to perform the filtering before determining target indexes 
+		//	in order to gain time
+		
+		if(nbEdit == 3 && hasTwoSourceClusters){
+			ArrayList<TNode> selNodes2 = new ArrayList<TNode>();
+			// two nodes being in the same cluster, one node moves into third node's cluster and the other moves into unknown cluster
+			// the third node moves into unknown cluster (i.e. total nb unknown target cluster = 2)
+			
+			if(selNodes.get(0).clusterId == selNodes.get(1).clusterId && selNodes.get(0).clusterId != selNodes.get(2).clusterId) {
+				// nodes 0 and 1 are in the same cluster: put them as the first two items
+				selNodes2.add(selNodes.get(0));selNodes2.add(selNodes.get(1));selNodes2.add(selNodes.get(2));
 			} 
+			else if(selNodes.get(0).clusterId == selNodes.get(2).clusterId && selNodes.get(0).clusterId != selNodes.get(1).clusterId) {
+				// nodes 0 and 2 are in the same cluster: put them as the first two items
+				selNodes2.add(selNodes.get(0));selNodes2.add(selNodes.get(2));selNodes2.add(selNodes.get(1));
+			}
+			else if(selNodes.get(1).clusterId == selNodes.get(2).clusterId && selNodes.get(0).clusterId != selNodes.get(1).clusterId) {
+				// nodes 1 and 2 are in the same cluster: put them as the first two items
+				selNodes2.add(selNodes.get(1));selNodes2.add(selNodes.get(1));selNodes2.add(selNodes.get(0));
+			}
 			
-			// =======
-			
-			if(!isExceptionalCaseFor3Edit){
-				// we also handle incomplete graphs, so a pair of nodes may have no link. 
-				// But, note that we check before this method that the moving nodes are connected internally and externally between them (i.e. connected component)
-				for(TNode node : selNodes){ // for each pair of nodes interacting between them
-					if(!ok)
-						break;
-					
-					for(TNode otherNode : selNodes){
-						if(ok && node.getNodeId() != otherNode.getNodeId() && node.getClusterId() != otherNode.getClusterId()){ 
-							// ensure that 2 different nodes and they are not in the same cluster
-							
-							if(node.getTargetClusterId() == otherNode.getTargetClusterId()){
-								if(adjMat[node.getNodeId()][otherNode.getNodeId()]<=0) // we do not want negative weight
-									ok = false;
-								
-							} else if(node.getTargetClusterId() != otherNode.getTargetClusterId()
-									&& (node.getTargetClusterId() == otherNode.clusterId || otherNode.getTargetClusterId() == node.clusterId)){
-								// target cluster ids are diff, but also one of them (or both) moves into the other's cluster, i.e. interaction
-								if(adjMat[node.getNodeId()][otherNode.getNodeId()]>=0) // we do not want positive weight
-									ok = false;
-							}
+			// ====
+			// nodes being at index 0 and 1 are in the same cluster, but the last is in a different cluster
+			if(selNodes2.get(0).targetClusterId==selNodes2.get(2).clusterId 
+					&& selNodes2.get(1).targetClusterId==selNodes2.get(2).clusterId
+					&& selNodes2.get(2).targetClusterId==selNodes2.get(0).clusterId)
+			{
+				isExceptionalCaseFor3Edit = true;
+				if(adjMat[selNodes2.get(0).getNodeId()][selNodes2.get(2).getNodeId()]>0) // we do not want positive weight outside a cluster
+					ok = false;
+				if(adjMat[selNodes2.get(1).getNodeId()][selNodes2.get(2).getNodeId()]>0) // we do not want positive weight outside a cluster
+					ok = false;
+			}
+		} 
+		
+		// =======
+		
+		if(!isExceptionalCaseFor3Edit){
+			// we also handle incomplete graphs, so a pair of nodes may have no link. 
+			// But, note that we check before this method that the moving nodes are connected internally and externally between them (i.e. connected component)
+			for(TNode node : selNodes){ // for each pair of nodes interacting between them
+				if(!ok)
+					break;
+				
+				for(TNode otherNode : selNodes){
+					if(ok && node.getNodeId() != otherNode.getNodeId() && node.getClusterId() != otherNode.getClusterId()){ 
+						// ensure that 2 different nodes and they are not in the same cluster
+						
+						if(node.getTargetClusterId() == otherNode.getTargetClusterId()){
+							if(adjMat[node.getNodeId()][otherNode.getNodeId()]<=0) // we do not want negative weight
+								ok = false;
 							
+						} else if(node.getTargetClusterId() != otherNode.getTargetClusterId()
+								&& (node.getTargetClusterId() == otherNode.clusterId || otherNode.getTargetClusterId() == node.clusterId)){
+							// target cluster ids are diff, but also one of them (or both) moves into the other's cluster, i.e. interaction
+							if(adjMat[node.getNodeId()][otherNode.getNodeId()]>=0) // we do not want positive weight
+								ok = false;
 						}
+						
 					}
 				}
 			}
-			
-			if(ok) // if it is still true
-				collector.add(selNodes);
 		}
-		
-		return(collector);
+		return(ok);
 	}
 	
 
@@ -1702,113 +2054,60 @@ public class MyGenericEnumeration extends Thread {
 			// -----
 			
 			
+			// The possible cluster ids of each target index satisfy the constraints of all the nodes having this target index.
+			//	They are split into the candidate targets, i.e. the new clusters and the clusters holding a neighbor of one of these nodes,
+			//	and the detached clusters, holding no neighbor of them (see 'isNeighborCluster()')
 			ArrayList<List<Integer>> remainingClusterIdsList = new ArrayList<List<Integer>>();
-			for(TNode node : subsetNodes){
-				if(node.notEqualToConstraints.size()>0 && node.getTargetClusterId() == -1){
-					List<Integer> remainingClusterIds = new ArrayList<>();
-					for(int cid=1; cid<=(initClustering.getNbCluster()+nbTargetClustersToFind); cid++) // +nbTargetClustersToFind for new clusters
-						remainingClusterIds.add(cid);
-					
-					// chaining all predicates of a given node, if there are many
-					Predicate<Integer> compositePredicate = node.notEqualToConstraints.stream().reduce(w -> true, Predicate::and); 
-					remainingClusterIds = remainingClusterIds.stream()   // convert list to stream
-			                .filter(compositePredicate)
-			                .collect(Collectors.toList());
-					
-					remainingClusterIdsList.add(remainingClusterIds);
+			ArrayList<List<Integer>> detachedClusterIdsList = new ArrayList<List<Integer>>();
+			for(int targetIndex=1; targetIndex<=nbTargetClustersToFind; targetIndex++){
+				List<Integer> remainingClusterIds = new ArrayList<>();
+				for(int cid=1; cid<=(initClustering.getNbCluster()+nbTargetClustersToFind); cid++) // +nbTargetClustersToFind for new clusters
+					remainingClusterIds.add(cid);
+				
+				for(TNode node : subsetNodes){
+					if(node.getTargetIndex() == targetIndex && node.notEqualToConstraints.size()>0){
+						// chaining all predicates of a given node, if there are many
+						Predicate<Integer> compositePredicate = node.notEqualToConstraints.stream().reduce(w -> true, Predicate::and); 
+						remainingClusterIds = remainingClusterIds.stream()   // convert list to stream
+				                .filter(compositePredicate)
+				                .collect(Collectors.toList());
+					}
 				}
-			} // note that remainingClusterIds are common for all those subset nodes
-			
-			
-			List<ArrayList<Integer>> permCombs = Combination2.generate(remainingClusterIdsList);
+				
+				List<Integer> candidateClusterIds = new ArrayList<>();
+				List<Integer> detachedClusterIds = new ArrayList<>();
+				for(int cid : remainingClusterIds){
+					if(cid >= newEmptyClusterId || isNeighborCluster(subsetNodes, targetIndex, cid))
+						candidateClusterIds.add(cid);
+					else
+						detachedClusterIds.add(cid);
+				}
+				remainingClusterIdsList.add(candidateClusterIds);
+				detachedClusterIdsList.add(detachedClusterIds);
+			}
 			
 			// ===========================================================================
 
 			
-			// 4) for each combination, check if the global objective function remains unchanged, i.e. it is an optimal clustering ?
-			//for (int[] combination : permCombs) {
-			for (ArrayList<Integer> combination : permCombs) {			
-				
-				ArrayList<TNode> updatedNodes = new ArrayList<>();
-				// update temporarily target cluster id, and then calculate the fitness of target cluster for this node
-				double delta = change; // change comes from the step 1
-				boolean ok = true;
-				for(TNode node : selNodes){
-					TNode newNode = new TNode(node);
-					int nodeClusterId = newNode.getClusterId();
-					
-					boolean fakeEditTransformation = false; 
-					if(newNode.getTargetClusterId() == -1){ // for the moving nodes where the target cluster id was unknown
-						int nodeSourceClusterIndex = ArrayOperations.whichIndex(selSourceClusterIds, nodeClusterId);
-						int newTargetClusterId = combination.get(newNode.getTargetIndex()-1);
-						//there are two possibilities for the so-called "non-min-edit operation" (property 1.a)
-						// 1) all the elements in one of the source clusters moves into a new (so, empty) cluster
-						
-						if(isWholeClusterBoolArr[nodeSourceClusterIndex]){
-							if(newTargetClusterId == newEmptyClusterId){
-								fakeEditTransformation = true;
-							}
-						}
-						
-						if(!fakeEditTransformation){
-							newNode.setTargetClusterId(newTargetClusterId); // target indexes start from 1
-
-							newNode.setTargetIndex(-1); // since we just assigned a target cluster id
-							newNode.computeTargetNodeFitness(g, adjMat);
-							
-							if(newNode.getClusterId() == newNode.getTargetClusterId())
-								newNode.setTargetIndex(-1);
-						} else {
-							ok = false;
-							break;
-						}
-					} 
-						
-					delta += newNode.calculateDeltaFitness();
-					updatedNodes.add(newNode);
-				}
-
-                // ========================================
-				// TODO: we have already another method doing this in a batch for multiple candidates: "filterByFakeEditTransformation()"
-				//		It would be good to create a method which is used in both methods. But consider the performance aspect as well.
-				//
-				// 2nd possibility for the so-called "non-min-edit operation" (property 1.a)
-				// Applying Property 1.a in Section 6.1 of the reference article: the strategy so-called "non-min-edit operation"
-				// the second fake scenario is that the whole source cluster moves into
-				// an existing cluster whose the size is less than the source size
-				if(updatedNodes.size()>1){
-					boolean isSingleSourceCluster = true;
-					boolean isSingleTargetCluster = true; // we could also use 'isWholeClusterBoolArr'
-					int tid = updatedNodes.get(0).getTargetClusterId();
-					int sid = updatedNodes.get(0).getClusterId();
-					//if(tid != newEmptyClusterId){ // OLD
-					if(tid < newEmptyClusterId){ // NEW: when taking into account for multiple empty cluster ids
-						for(TNode node : updatedNodes){
-							if(tid != node.getTargetClusterId()){
-								isSingleTargetCluster = false;
-								break;
-							}
-							if(sid != node.getClusterId()){
-								isSingleSourceCluster = false;
-								break;
-							}	
-						}
-						if(isSingleSourceCluster && isSingleTargetCluster && initClusters.get(sid-1).size()==updatedNodes.size()){
-							if(initClusters.get(sid-1).size()>initClusters.get(tid-1).size())
-								ok = false;
-						}
-					}
-				}
-				// ========================================
-
-				
-				boolean isEligible = true;
-				if(updatedNodes.size()>1)
-					isEligible = isEligibleTransformation(updatedNodes, true);
-				if(isEligible && ok && delta == 0.0){
+			// 4) The combinations of target clusters are explored by a depth-first search, assigning one target index at a time,
+			//	instead of generating all of them and computing their imbalance change from scratch (see 'TargetAssignmentSearch').
+			//	The new clusters are interchangeable, so only one labeling of them is explored, where the new clusters take the ids 
+			//	'newEmptyClusterId', 'newEmptyClusterId'+1, etc. in the order of the target indexes
+			TargetAssignmentSearch search = new TargetAssignmentSearch(selNodes, change, remainingClusterIdsList, newEmptyClusterId);
+			for(ArrayList<Integer> combination : search.findZeroDeltaCombinations()){
+				ArrayList<TNode> updatedNodes = assignTargetClusters(selNodes, combination);
+				if(isMinEditTransformation(selNodes, updatedNodes, selSourceClusterIds, isWholeClusterBoolArr, initClusters, newEmptyClusterId))
 					optimalTransformations.add(updatedNodes);
-				}
 				
+				// The nodes moving into a detached cluster have no link with its nodes, as in a new cluster: the imbalance change is the same.
+				//	So, the transformations where some new clusters are replaced by detached clusters are optimal as well.
+				//	This holds even if the current transformation is a fake one (e.g. a whole source cluster moving into a new cluster),
+				//	since moving it into a detached cluster is a merge
+				for(ArrayList<Integer> variant : getDetachedVariants(combination, detachedClusterIdsList, newEmptyClusterId)){
+					ArrayList<TNode> variantNodes = assignTargetClusters(selNodes, variant);
+					if(isMinEditTransformation(selNodes, variantNodes, selSourceClusterIds, isWholeClusterBoolArr, initClusters, newEmptyClusterId))
+						optimalTransformations.add(variantNodes);
+				}
 			}
 			
 		} else { // if(nbTargetClusters == 0){ ==> i.e. we know where to move all selected nodes
@@ -1830,6 +2129,293 @@ public class MyGenericEnumeration extends Thread {
 
 	
 	
+	/**
+	 * A depth-first search over the target clusters of the target indexes of a transformation, which returns the combinations 
+	 *   whose imbalance change is zero (see 'findOptimalTransformations()').
+	 * 
+	 * The imbalance change of a combination is the change caused by the links between the moving nodes, plus the change of each node,
+	 *   i.e. its weight sum in its target cluster minus its current fitness. So, it is the sum of a fixed part and of a value 
+	 *   for each target index and target cluster, which are computed once in a table. The search assigns the target indexes in order,
+	 *   updating the partial sum, and a branch is cut as soon as the smallest and the greatest possible values of the remaining 
+	 *   target indexes cannot bring the sum back to zero. The imbalance change of a complete combination is then computed 
+	 *   in the same order as before, node by node, so that a combination is accepted if and only if its change is exactly zero.
+	 */
+	class TargetAssignmentSearch {
+		ArrayList<TNode> selNodes;
+		double change; // the change caused by the links between the moving nodes
+		int nbTargetIndex;
+		int[][] candidates; // the possible target clusters of each target index
+		double[][] deltas; // the imbalance change of the nodes of each target index, for each of its possible target clusters
+		double[] minRemainingDeltas; // 'minRemainingDeltas[t]': the smallest possible change of the target indexes t, ..., nbTargetIndex-1
+		double[] maxRemainingDeltas;
+		int newEmptyClusterId;
+		int[] combination;
+		List<ArrayList<Integer>> collector;
+		
+		
+		TargetAssignmentSearch(ArrayList<TNode> selNodes_, double change_, ArrayList<List<Integer>> clusterIdsList, int newEmptyClusterId_){
+			selNodes = selNodes_;
+			change = change_;
+			newEmptyClusterId = newEmptyClusterId_;
+			nbTargetIndex = clusterIdsList.size();
+			candidates = new int[nbTargetIndex][];
+			deltas = new double[nbTargetIndex][];
+			for(int t=0; t<nbTargetIndex; t++){
+				List<Integer> clusterIds = clusterIdsList.get(t);
+				candidates[t] = new int[clusterIds.size()];
+				deltas[t] = new double[clusterIds.size()];
+				for(int j=0; j<clusterIds.size(); j++)
+					candidates[t][j] = clusterIds.get(j);
+			}
+			
+			for(TNode node : selNodes){
+				if(node.getTargetClusterId() == -1){
+					int t = node.getTargetIndex()-1;
+					double[] weightSums = g.weightSumInClusters[node.getNodeId()];
+					for(int j=0; j<candidates[t].length; j++)
+						deltas[t][j] += weightSums[candidates[t][j]-1] - node.getCurrFitness();
+				}
+			}
+			
+			minRemainingDeltas = new double[nbTargetIndex+1];
+			maxRemainingDeltas = new double[nbTargetIndex+1];
+			for(int t=nbTargetIndex-1; t>=0; t--){
+				double min = Double.POSITIVE_INFINITY;
+				double max = Double.NEGATIVE_INFINITY;
+				for(double delta : deltas[t]){
+					min = Math.min(min, delta);
+					max = Math.max(max, delta);
+				}
+				minRemainingDeltas[t] = minRemainingDeltas[t+1] + min;
+				maxRemainingDeltas[t] = maxRemainingDeltas[t+1] + max;
+			}
+		}
+		
+		
+		List<ArrayList<Integer>> findZeroDeltaCombinations(){
+			collector = new ArrayList<ArrayList<Integer>>();
+			double fixedDelta = change;
+			for(TNode node : selNodes)
+				if(node.getTargetClusterId() != -1)
+					fixedDelta += node.calculateDeltaFitness();
+			
+			for(int t=0; t<nbTargetIndex; t++)
+				if(candidates[t].length == 0)
+					return(collector);
+			combination = new int[nbTargetIndex];
+			search(0, fixedDelta, newEmptyClusterId);
+			return(collector);
+		}
+		
+		
+		// 'nextNewId' is the label of the next new cluster, i.e. the labels newEmptyClusterId..(nextNewId-1) are already used
+		private void search(int t, double partialDelta, int nextNewId){
+			if(t == nbTargetIndex){
+				if(computeDelta() == 0.0){
+					ArrayList<Integer> c = new ArrayList<Integer>(nbTargetIndex);
+					for(int clusterId : combination)
+						c.add(clusterId);
+					collector.add(c);
+				}
+				return;
+			}
+			
+			double minRemaining = minRemainingDeltas[t+1];
+			double maxRemaining = maxRemainingDeltas[t+1];
+			for(int j=0; j<candidates[t].length; j++){
+				int clusterId = candidates[t][j];
+				if(clusterId > nextNewId) // a new cluster which is not the next one: a relabeling
+					continue;
+				double delta = partialDelta + deltas[t][j];
+				if(delta + minRemaining > ZeroDeltaMoveIndex.EPSILON || delta + maxRemaining < -ZeroDeltaMoveIndex.EPSILON)
+					continue; // the remaining target indexes cannot bring the change back to zero
+				combination[t] = clusterId;
+				search(t+1, delta, clusterId == nextNewId ? nextNewId+1 : nextNewId);
+			}
+		}
+		
+		
+		// It returns the imbalance change of 'combination', summed in the order of the nodes
+		private double computeDelta(){
+			double delta = change;
+			for(TNode node : selNodes){
+				if(node.getTargetClusterId() == -1){
+					int clusterId = combination[node.getTargetIndex()-1];
+					delta += g.weightSumInClusters[node.getNodeId()][clusterId-1] - node.getCurrFitness();
+				} else
+					delta += node.calculateDeltaFitness();
+			}
+			return(delta);
+		}
+	}
+	
+	
+	
+	// It returns true if at least one node having the target index 'targetIndex' has a neighbor in the cluster 'clusterId'
+	//	(the tables of 'g' are used, so that the test takes O(1) by node)
+	boolean isNeighborCluster(ArrayList<TNode> nodes, int targetIndex, int clusterId){
+		for(TNode node : nodes)
+			if(node.getTargetIndex() == targetIndex && g.absWeightSumInClusters[node.getNodeId()][clusterId-1] > 0.0)
+				return(true);
+		return(false);
+	}
+	
+	
+	// It returns a copy of the nodes, where the nodes whose target cluster is unknown move into the cluster of their target index in 'combination'
+	ArrayList<TNode> assignTargetClusters(ArrayList<TNode> selNodes, List<Integer> combination){
+		ArrayList<TNode> updatedNodes = new ArrayList<>(selNodes.size());
+		for(TNode node : selNodes){
+			TNode newNode = new TNode(node);
+			if(newNode.getTargetClusterId() == -1){ // for the moving nodes where the target cluster id was unknown
+				newNode.setTargetClusterId(combination.get(newNode.getTargetIndex()-1)); // target indexes start from 1
+				newNode.setTargetIndex(-1); // since we just assigned a target cluster id
+				newNode.computeTargetNodeFitness(g, adjMat);
+			}
+			updatedNodes.add(newNode);
+		}
+		return(updatedNodes);
+	}
+	
+	
+	/**
+	 * It returns false if the transformation is a so-called "non-min-edit operation" (see Property 1.a in Section 6.1 of the reference article),
+	 *   or if it is not eligible (see 'isEligibleTransformation()').
+	 * 
+	 * @param selNodes: the nodes before the assignment of their target cluster
+	 * @param updatedNodes: the same nodes, with their target cluster
+	 * @param selSourceClusterIds
+	 * @param isWholeClusterBoolArr
+	 * @param initClusters
+	 * @param newEmptyClusterId
+	 * @return
+	 */
+	boolean isMinEditTransformation(ArrayList<TNode> selNodes, ArrayList<TNode> updatedNodes, int[] selSourceClusterIds, 
+			boolean[] isWholeClusterBoolArr, ArrayList<ArrayList<Integer>> initClusters, int newEmptyClusterId){
+		
+		// 1st possibility: all the elements in one of the source clusters move into a new (so, empty) cluster
+		for(int i=0; i<selNodes.size(); i++){
+			if(selNodes.get(i).getTargetClusterId() == -1){
+				TNode node = updatedNodes.get(i);
+				int nodeSourceClusterIndex = ArrayOperations.whichIndex(selSourceClusterIds, node.getClusterId());
+				if(isWholeClusterBoolArr[nodeSourceClusterIndex] && node.getTargetClusterId() >= newEmptyClusterId) // any new cluster, since their labels are canonical
+					return(false);
+			}
+		}
+		
+		// 2nd possibility: the whole source cluster moves into an existing cluster whose the size is less than the source size
+		// TODO: we have already another method doing this for a node subset: "isFakeEditTransformation()"
+		if(updatedNodes.size()>1){
+			int tid = updatedNodes.get(0).getTargetClusterId();
+			int sid = updatedNodes.get(0).getClusterId();
+			if(tid < newEmptyClusterId){ // when taking into account for multiple empty cluster ids
+				boolean isSingleSourceCluster = true;
+				boolean isSingleTargetCluster = true;
+				for(TNode node : updatedNodes){
+					if(tid != node.getTargetClusterId()){
+						isSingleTargetCluster = false;
+						break;
+					}
+					if(sid != node.getClusterId()){
+						isSingleSourceCluster = false;
+						break;
+					}	
+				}
+				if(isSingleSourceCluster && isSingleTargetCluster && initClusters.get(sid-1).size()==updatedNodes.size()){
+					if(initClusters.get(sid-1).size()>initClusters.get(tid-1).size())
+						return(false);
+				}
+			}
+			
+			return(isEligibleTransformation(updatedNodes, true));
+		}
+		return(true);
+	}
+	
+	
+	/**
+	 * It returns the combinations obtained from 'combination' by replacing some of its new clusters with detached clusters, i.e. clusters
+	 *   holding no neighbor of the nodes moving into this new cluster (see 'findOptimalTransformations()'). A detached cluster replaces 
+	 *   at most one new cluster, and is not already a target of the combination. The remaining new clusters are relabeled canonically, 
+	 *   as in 'TargetAssignmentSearch', so that each combination is obtained once.
+	 * 
+	 * @param combination
+	 * @param detachedClusterIdsList: the detached clusters of each target index
+	 * @param newEmptyClusterId
+	 * @return
+	 */
+	List<ArrayList<Integer>> getDetachedVariants(List<Integer> combination, ArrayList<List<Integer>> detachedClusterIdsList, int newEmptyClusterId){
+		List<ArrayList<Integer>> variants = new ArrayList<ArrayList<Integer>>();
+		
+		// the detached clusters of each new cluster, which must be detached for all its target indexes
+		int nbNewCluster = 0;
+		for(int cid : combination)
+			nbNewCluster = Math.max(nbNewCluster, cid-newEmptyClusterId+1);
+		if(nbNewCluster == 0)
+			return(variants);
+		List<List<Integer>> replacementsList = new ArrayList<List<Integer>>(nbNewCluster);
+		boolean hasReplacement = false;
+		for(int l=0; l<nbNewCluster; l++){
+			List<Integer> replacements = null;
+			for(int t=0; t<combination.size(); t++){
+				if(combination.get(t) == newEmptyClusterId+l){
+					if(replacements == null)
+						replacements = new ArrayList<>(detachedClusterIdsList.get(t));
+					else
+						replacements.retainAll(detachedClusterIdsList.get(t));
+				}
+			}
+			replacements.removeAll(combination);
+			hasReplacement = hasReplacement || replacements.size()>0;
+			replacementsList.add(replacements);
+		}
+		
+		if(hasReplacement)
+			collectDetachedVariants(variants, combination, replacementsList, new int[nbNewCluster], 0, false, newEmptyClusterId);
+		return(variants);
+	}
+	
+	
+	// 'choices[l]' is the cluster replacing the new cluster l, or 0 if it stays a new cluster
+	private void collectDetachedVariants(List<ArrayList<Integer>> variants, List<Integer> combination, List<List<Integer>> replacementsList,
+			int[] choices, int l, boolean isReplaced, int newEmptyClusterId){
+		if(l == choices.length){
+			if(!isReplaced)
+				return;
+			int[] newLabels = new int[choices.length]; // the canonical labels of the remaining new clusters
+			int nextNewId = newEmptyClusterId;
+			ArrayList<Integer> variant = new ArrayList<>(combination.size());
+			for(int cid : combination){
+				if(cid < newEmptyClusterId)
+					variant.add(cid);
+				else if(choices[cid-newEmptyClusterId] > 0)
+					variant.add(choices[cid-newEmptyClusterId]);
+				else {
+					if(newLabels[cid-newEmptyClusterId] == 0)
+						newLabels[cid-newEmptyClusterId] = nextNewId++;
+					variant.add(newLabels[cid-newEmptyClusterId]);
+				}
+			}
+			variants.add(variant);
+			return;
+		}
+		
+		choices[l] = 0;
+		collectDetachedVariants(variants, combination, replacementsList, choices, l+1, isReplaced, newEmptyClusterId);
+		for(int cid : replacementsList.get(l)){
+			boolean isUsed = false;
+			for(int j=0; j<l; j++)
+				if(choices[j] == cid)
+					isUsed = true;
+			if(isUsed)
+				continue;
+			choices[l] = cid;
+			collectDetachedVariants(variants, combination, replacementsList, choices, l+1, true, newEmptyClusterId);
+		}
+		choices[l] = 0;
+	}
+	
+	
+	
 	public Set<Clustering> enumerateClusterings(ArrayList<ArrayList<TNode>> optimalTransformations){
 		Set<Clustering> s = new HashSet<>();
 		
@@ -1837,7 +2423,15 @@ public class MyGenericEnumeration extends Thread {
 			
 			Clustering cnew = new Clustering(initClustering);
 			cnew.changeClusterOfMultipleNodes(selNodes);
-			cnew.computeImbalance(adjMat);
+			int[] movedNodeIds = new int[selNodes.size()];
+			for(int i=0; i<selNodes.size(); i++)
+				movedNodeIds[i] = selNodes.get(i).getNodeId();
+			cnew.setParentGraphId(g.id, movedNodeIds);
+			
+			// The imbalance of the new clustering is the one of its parent (see 'findOptimalTransformations()')
+			cnew.setImbalance(initClustering.getImbalance()); // the delta of an optimal transformation is zero
+			if(isImbalanceVerified)
+				verifyImbalance(cnew);
 			s.add(cnew);
 		}
 		//System.out.println(s.size());
@@ -1846,5 +2440,16 @@ public class MyGenericEnumeration extends Thread {
 	
 	
 	
+	// It recomputes the imbalance of 'c' from scratch and reports any difference with its incrementally obtained value
+	public void verifyImbalance(Clustering c){
+		double imbalance = c.getImbalance();
+		c.computeImbalance(adjMat);
+		if(Math.abs(imbalance - c.getImbalance()) > 1e-9)
+			System.err.println("Incremental imbalance " + imbalance + " differs from the computed one " + c.getImbalance() 
+				+ " for the clustering obtained from " + initClustering.getId());
+	}
+	
+	
+	
 }
 
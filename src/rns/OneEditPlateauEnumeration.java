@@ -0,0 +1,223 @@
+package rns;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import myUtils.Clustering;
+import rns.utils.ClusteringFingerprintSet;
+import rns.utils.MyCGraph;
+
+
+/**
+ * The enumeration of the 1-edit operations, specialized for this case: it computes the closure of the initial clustering
+ *   in the graph of the zero-delta single moves (the so-called plateau), i.e. all the new optimal clusterings reachable
+ *   from it through a sequence of 1-edit operations.
+ *
+ * A 1-edit operation moves a node u from its cluster A into a cluster t (an existing one, or a new one if A is not a singleton),
+ *   and its imbalance change is w(u,t) - w(u,A). So, the zero-delta moves of a clustering are found by a single scan of its node-to-cluster
+ *   weight table, without the combinations, the node lists and the pruning filters of 'MyGenericEnumeration'. This gives the same solutions
+ *   as 'MyGenericEnumeration' with nbEdit=1, since these filters never reject a zero-delta single move.
+ *   The tables of a new clustering are derived from the ones of its parent, by updating the contributions of the moved node
+ *   (see 'MyCGraph.fillInNodeToWeightedDegreeSum()'). The plateau is traversed in breadth-first order, so that the distance
+ *   of a clustering is its edit distance to the initial one. The tables of a clustering are retained only until all its children
+ *   have derived their own tables, and the retained tables are bounded by 'MyCGraph.MAX_RETAINED_MEMORY' (beyond it,
+ *   the tables are built from scratch).
+ *
+ * A clustering already discovered (see 'setDiscoveredFingerprints()') is not traversed, since its own exploration finds its neighbors.
+ *   If the enumeration is not stopped, each clustering of 'foundClusterings' has been traversed, so its 1-edit operations are already applied.
+ */
+public class OneEditPlateauEnumeration {
+
+	double[][] adjMat;
+	Clustering initClustering;
+	int n;
+	// the new clusterings, in breadth-first order, along with their distance to the initial clustering
+	//	and the index of their parent in 'foundClusterings' (-1 for the initial clustering)
+	public List<Clustering> foundClusterings = new ArrayList<Clustering>();
+	public List<Integer> distances = new ArrayList<Integer>();
+	public List<Integer> parentIndexes = new ArrayList<Integer>();
+	public double execTime; // in seconds
+
+	// the same limits as in 'MyGenericEnumeration'
+	long deadline = Long.MAX_VALUE;
+	AtomicLong solutionBudget = null;
+	ClusteringFingerprintSet discoveredFingerprints = null;
+	boolean isStopped = false;
+	NewClusteringsListener listener = null;
+	int maxDistance = Integer.MAX_VALUE; // the clusterings at this distance are not traversed
+
+
+	// It receives the new clusterings as soon as they are found, i.e. after the traversal of their parent
+	public interface NewClusteringsListener {
+		/**
+		 * @param fromIndex: the index of the first new clustering in 'foundClusterings'
+		 * @param toIndex: the index following the last new clustering
+		 * @return false if the enumeration must stop
+		 */
+		boolean newClusteringsFound(int fromIndex, int toIndex);
+	}
+
+
+	public OneEditPlateauEnumeration(double[][] adjMat_, Clustering initClustering_){
+		adjMat = adjMat_;
+		initClustering = initClustering_;
+		n = initClustering.n;
+	}
+
+
+	// see 'MyGenericEnumeration.setDeadline()'
+	public void setDeadline(long deadline_){
+		this.deadline = deadline_;
+	}
+
+
+	// see 'MyGenericEnumeration.setSolutionBudget()'
+	public void setSolutionBudget(AtomicLong budget){
+		this.solutionBudget = budget;
+	}
+
+
+	// see 'MyGenericEnumeration.setDiscoveredFingerprints()'. If they are not shared, only the initial clustering is considered as discovered
+	public void setDiscoveredFingerprints(ClusteringFingerprintSet fingerprints){
+		this.discoveredFingerprints = fingerprints;
+	}
+
+
+	// The new clusterings can be used by the listener (e.g. explored with other edit distances) while the traversal goes on.
+	//	Then, the tables of their parent are read by the other threads, so they are not recycled (see 'MyCGraph.dropRetained()')
+	public void setListener(NewClusteringsListener listener_){
+		this.listener = listener_;
+	}
+
+
+	// With maxDistance=1, only the initial clustering is traversed, i.e. only its own 1-edit operations are applied
+	public void setMaxDistance(int maxDistance_){
+		this.maxDistance = maxDistance_;
+	}
+
+
+	// It returns true if the enumeration has been stopped by the deadline or the solution budget, i.e. if the plateau may be incomplete
+	public boolean isStopped(){
+		return(isStopped);
+	}
+
+
+
+	public void enumerate(){
+		long startTime = System.currentTimeMillis();
+		if(discoveredFingerprints == null){
+			discoveredFingerprints = new ClusteringFingerprintSet();
+			discoveredFingerprints.add(initClustering);
+		}
+
+		// the number of children not traversed yet, for the initial clustering and then for each clustering of 'foundClusterings'
+		List<Integer> nbRemainingChildren = new ArrayList<Integer>();
+		nbRemainingChildren.add(0);
+		// the clusterings are traversed in the order of their discovery, i.e. in breadth-first order (-1 for the initial clustering),
+		//	so that the distance of a clustering is its shortest distance to the initial one
+		for(int index=-1; index<foundClusterings.size() && !isStopped; index++){
+			if(System.currentTimeMillis() >= deadline || (solutionBudget != null && solutionBudget.get() <= 0)){
+				isStopped = true;
+				break;
+			}
+			Clustering c = (index == -1) ? initClustering : foundClusterings.get(index);
+			int distance = (index == -1) ? 0 : distances.get(index);
+			if(distance >= maxDistance) // the next clusterings are not closer, since they are in breadth-first order
+				break;
+
+			MyCGraph g = MyCGraph.acquire(n, c, 1);
+			MyCGraph parentGraph = MyCGraph.getRetained(c.getParentGraphId()); // null if dropped
+			if(parentGraph != null)
+				g.fillInNodeToWeightedDegreeSum(adjMat, parentGraph, c.getMovedNodeIds());
+			else
+				g.fillInNodeToWeightedDegreeSum(adjMat);
+			if(index != -1){
+				int parentIndex = parentIndexes.get(index);
+				int nbRemainingChild = nbRemainingChildren.get(parentIndex+1)-1;
+				nbRemainingChildren.set(parentIndex+1, nbRemainingChild);
+				// all the children of the parent have derived their tables, so the memory of its tables can be reclaimed
+				if(nbRemainingChild == 0)
+					MyCGraph.dropRetained(c.getParentGraphId());
+			}
+
+			int nbChild = 0;
+			int nbCluster = c.getNbCluster();
+			int[] membership = c.membership;
+			int[] clusterSizes = c.getClusterSizes();
+			for(int u=0; u<n && !isStopped; u++){
+				int clusterId = membership[u];
+				if(clusterId == -1) // a removed node
+					continue;
+				double[] weightSums = g.weightSumInClusters[u];
+				double own = weightSums[clusterId-1];
+				for(int t=1; t<=nbCluster; t++){
+					if(t != clusterId && weightSums[t-1] - own == 0.0 && addMove(c, g, u, t, index, distance))
+						nbChild++;
+				}
+				// a new cluster, i.e. w(u,new)=0, unless u is alone in its cluster (the same clustering)
+				if(clusterSizes[clusterId-1] > 1 && own == 0.0 && addMove(c, g, u, nbCluster+1, index, distance))
+					nbChild++;
+			}
+
+			nbRemainingChildren.set(index+1, nbChild);
+			for(int i=0; i<nbChild; i++)
+				nbRemainingChildren.add(0);
+			// the new clusterings derive their own tables from 'g' if it is still retained when they are traversed,
+			//	so we can recycle it only if there is none
+			if(nbChild == 0 || distance+1 >= maxDistance)
+				g.release();
+			else
+				g.retain();
+			if(nbChild > 0 && listener != null && !listener.newClusteringsFound(foundClusterings.size()-nbChild, foundClusterings.size()))
+				isStopped = true;
+		}
+
+		execTime = (float) (System.currentTimeMillis()-startTime)/1000;
+	}
+
+
+	// It adds the clustering obtained by moving u into the cluster t, if it is new and the solution budget allows it
+	private boolean addMove(Clustering c, MyCGraph g, int u, int t, int parentIndex, int parentDistance){
+		Clustering cnew = new Clustering(c);
+		cnew.changeClusterOfNode(u, t, true);
+		if(!discoveredFingerprints.add(cnew)) // already discovered
+			return(false);
+		if(!consumeSolutionBudget()){
+			discoveredFingerprints.remove(cnew);
+			isStopped = true;
+			return(false);
+		}
+
+		cnew.setParentGraphId(g.id, new int[]{u});
+		cnew.setImbalance(c.getImbalance()); // the delta is zero
+		cnew.setNbEditParent(1);
+		cnew.setParentClusteringId(c.getId());
+		if(MyGenericEnumeration.isImbalanceVerified){
+			double imbalance = cnew.getImbalance();
+			cnew.computeImbalance(adjMat);
+			if(Math.abs(imbalance - cnew.getImbalance()) > 1e-9)
+				System.err.println("Incremental imbalance " + imbalance + " differs from the computed one " + cnew.getImbalance() 
+					+ " for the clustering obtained from " + c.getId());
+		}
+		foundClusterings.add(cnew);
+		distances.add(parentDistance+1);
+		parentIndexes.add(parentIndex);
+		return(true);
+	}
+
+
+	// see 'MyGenericEnumeration.consumeSolutionBudget()'
+	private boolean consumeSolutionBudget(){
+		if(solutionBudget == null)
+			return(true);
+		long b;
+		do {
+			b = solutionBudget.get();
+			if(b <= 0)
+				return(false);
+		} while(!solutionBudget.compareAndSet(b, b-1));
+		return(true);
+	}
+
+}
@@ -50,6 +50,14 @@ public class RNS {
 	 * 									then pass to another solution. Otherwise, we apply d-edit operation
 	 * 									with d=1 to all unprocessed solutions, then we increase d and apply again.
 	 * 									This option is used for our experiments in Section 8.1. </li>
+	 * <li> isImbalanceVerified (boolean): Default false. The imbalance of a new solution is obtained from the one of its parent solution.
+	 * 									When it is true, it is also computed from scratch in order to verify it (for debug). </li>
+	 * <li> useVirtualThreads (boolean): Default false. When it is true, each exploration task of the BFS runs in its own thread,
+	 * 									a virtual thread if the Java runtime supports them (Java 21 or later), with at most nbThread tasks at once.
+	 * 									Otherwise, the tasks run in a pool of nbThread threads. Not used when isIncrementalEditBFS is true. </li>
+	 * <li> nbProcess (Integer): Default 1. When it is greater than 1, the enumeration is distributed over nbProcess worker processes
+	 * 									started on the local host, each one with nbThread threads (see EnumerationBFSDistributed).
+	 * 									Not used when isIncrementalEditBFS is true. </li>
 	 * </ul>
 	 * 
 
@@ -83,6 +91,9 @@ public class RNS {
 		int solLim = -1;
 		boolean isBruteForce = false;
 		boolean isIncrementalEditBFS = false; // for benchmark, use isIncrementalEditBFS = true
+		boolean isImbalanceVerified = false;
+		boolean useVirtualThreads = false;
+		int nbProcess = 1;
 		
 
 		System.out.println("___");
@@ -122,6 +133,18 @@ public class RNS {
 		if( !System.getProperty("isIncrementalEditBFS").equals("${isIncrementalEditBFS}") )
 			isIncrementalEditBFS = Boolean.valueOf(System.getProperty("isIncrementalEditBFS"));
 		
+		// optional, since it is not passed by the EnumCC program
+		if( System.getProperty("isImbalanceVerified") != null && !System.getProperty("isImbalanceVerified").equals("${isImbalanceVerified}") )
+			isImbalanceVerified = Boolean.valueOf(System.getProperty("isImbalanceVerified"));
+		
+		// optional, since it is not passed by the EnumCC program
+		if( System.getProperty("useVirtualThreads") != null && !System.getProperty("useVirtualThreads").equals("${useVirtualThreads}") )
+			useVirtualThreads = Boolean.valueOf(System.getProperty("useVirtualThreads"));
+		
+		// optional, since it is not passed by the EnumCC program
+		if( System.getProperty("nbProcess") != null && !System.getProperty("nbProcess").equals("${nbProcess}") )
+			nbProcess = Integer.parseInt(System.getProperty("nbProcess"));
+		
 		System.out.println("===============================================");
 		System.out.println("initMembershipFilePath: " + initMembershipFilePath);
 		System.out.println("allPreviousResultsFilePath: " + allPreviousResultsFilePath);
@@ -132,10 +155,14 @@ public class RNS {
 		System.out.println("solLim: " + solLim);
 		System.out.println("isBruteForce: " + isBruteForce);
 		System.out.println("isIncrementalEditBFS: " + isIncrementalEditBFS);
+		System.out.println("isImbalanceVerified: " + isImbalanceVerified);
+		System.out.println("useVirtualThreads: " + useVirtualThreads);
+		System.out.println("nbProcess: " + nbProcess);
 		System.out.println("===============================================");
 		
 
 		new File(outputDirPath).mkdirs();
+		MyGenericEnumeration.isImbalanceVerified = isImbalanceVerified;
 		
 //		try {
 //			String startSolutionFileName="membership0.txt";
@@ -149,8 +176,10 @@ public class RNS {
 
 		
 		AbstractEnumeration e;
-		if(!isIncrementalEditBFS)
-			e = new EnumerationBFS(adjMat, tilim, solLim, nbThread, maxNbEdit, isBruteForce);
+		if(!isIncrementalEditBFS && nbProcess > 1)
+			e = new EnumerationBFSDistributed(adjMat, tilim, solLim, nbThread, maxNbEdit, isBruteForce, nbProcess);
+		else if(!isIncrementalEditBFS)
+			e = new EnumerationBFS(adjMat, tilim, solLim, nbThread, maxNbEdit, isBruteForce, useVirtualThreads);
 		else
 			e = new EnumerationBFSIncremental(adjMat, tilim, solLim, nbThread, maxNbEdit, isBruteForce); 
 
@@ -0,0 +1,256 @@
+package rns;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import myUtils.Clustering;
+import rns.utils.ClusteringFingerprintSet;
+import rns.utils.PruningFilterStatistics;
+import rns.utils.ShardProtocol;
+import rns.utils.ShardProtocol.Record;
+import rns.utils.ThreadPerTaskExecutor;
+
+
+/**
+ * A worker process of the distributed enumeration (see 'EnumerationBFSDistributed'). It owns the clusterings whose fingerprint
+ *   belongs to its shard: it checks whether a clustering sent by the coordinator is new, and if so, it explores it
+ *   with all the edit distances up to 'maxNbEdit', one task per edit distance, in the same order as 'EnumerationBFS'.
+ *   The solutions found are sent to the coordinator, which routes them to their owner.
+ *   So, each clustering is deduplicated by a single process, and the set of discovered clusterings is split between the processes.
+ *
+ * The worker is started by the coordinator, with its address as arguments:
+ * <pre>
+ * {@code
+ * java -cp RNSCC.jar rns.ShardWorker 127.0.0.1 <port>
+ * }
+ * </pre>
+ */
+public class ShardWorker {
+
+	int shardId;
+	int nbShard;
+	int maxNbEdit;
+	boolean isBruteForce;
+	double[][] adjMat;
+	int n;
+	long deadline = Long.MAX_VALUE; // in milliseconds
+
+	DataInputStream in;
+	DataOutputStream out; // shared by the exploration tasks, accessed only when holding its lock
+	ThreadPoolExecutor executor; // its queue orders the tasks (see 'ShardTask')
+	AtomicLong taskCounter = new AtomicLong(0); // used to break ties between the tasks, as in 'EnumerationBFS'
+	// the clusterings owned by this shard and already discovered
+	ClusteringFingerprintSet ownedFingerprints = new ClusteringFingerprintSet();
+	// the new solutions accepted by this shard, accessed only when holding its lock
+	List<Record> acceptedRecords = new ArrayList<Record>();
+	// set to 0 when the enumeration is stopped, so that the running enumerations stop (see 'MyGenericEnumeration.setSolutionBudget()')
+	AtomicLong stopBudget = new AtomicLong(Long.MAX_VALUE);
+	PruningFilterStatistics filterStatistics;
+
+
+
+	public static void main(String[] args) throws IOException {
+		String host = args[0];
+		int port = Integer.parseInt(args[1]);
+
+		try (Socket socket = new Socket(host, port)) {
+			socket.setTcpNoDelay(true);
+			ShardWorker worker = new ShardWorker(socket);
+			worker.run();
+		}
+	}
+
+
+	ShardWorker(Socket socket) throws IOException {
+		in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+		out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+
+		if(in.readByte() != ShardProtocol.INIT)
+			throw new IOException("The first message of the coordinator must be INIT");
+		shardId = in.readInt();
+		nbShard = in.readInt();
+		maxNbEdit = in.readInt();
+		int nbThread = in.readInt();
+		isBruteForce = in.readBoolean();
+		long remainingTime = in.readLong();
+		if(remainingTime >= 0)
+			deadline = System.currentTimeMillis() + remainingTime;
+		adjMat = ShardProtocol.readGraph(in);
+		n = adjMat.length;
+
+		executor = new ThreadPoolExecutor(nbThread, nbThread, 0L, TimeUnit.MILLISECONDS, new PriorityBlockingQueue<Runnable>(),
+				ThreadPerTaskExecutor::newDaemonThread);
+		filterStatistics = new PruningFilterStatistics(maxNbEdit);
+		System.out.println("shard " + shardId + "/" + nbShard + " is ready, n=" + n);
+	}
+
+
+
+	// It handles the messages of the coordinator until STOP. This thread only reads and queues the tasks, it never writes:
+	//	so, it cannot be blocked by a full socket buffer while the coordinator is blocked writing to this worker
+	void run() throws IOException {
+		while(true){
+			byte type = in.readByte();
+			if(type == ShardProtocol.KNOWN){
+				for(Record r : ShardProtocol.readRecords(in, n))
+					ownedFingerprints.add(r.c);
+			}
+			else if(type == ShardProtocol.CLUSTERINGS){
+				for(Record r : ShardProtocol.readRecords(in, n))
+					schedule(new EnumerationBFS.FrontierEntry(r.c, r.generation, r.yield), 0);
+			}
+			else if(type == ShardProtocol.STOP)
+				break;
+			else
+				throw new IOException("Unknown message type: " + type);
+		}
+
+		// the queued tasks are cancelled, and the running ones stop shortly, as with the deadline
+		stopBudget.set(0);
+		executor.shutdownNow();
+		try {
+			executor.awaitTermination(EnumerationBFSDistributed.STOP_GRACE_PERIOD, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			e.printStackTrace();
+		}
+
+		synchronized(out){
+			out.writeByte(ShardProtocol.RESULTS);
+			synchronized(acceptedRecords){
+				ShardProtocol.writeRecords(out, acceptedRecords);
+			}
+			out.flush();
+		}
+		System.out.println("shard " + shardId + " accepted " + acceptedRecords.size() + " clusterings");
+	}
+
+
+
+	// A task of this worker: the check of a received clustering (nbEdit=0, so that it is performed first), or the exploration
+	//	of an accepted clustering with an edit distance. The tasks are ordered as in 'EnumerationBFS' (see 'EnumerationBFS.FrontierTask')
+	class ShardTask extends EnumerationBFS.FrontierTask {
+
+		ShardTask(EnumerationBFS.FrontierEntry entry_, int nbEdit_){
+			super(entry_, nbEdit_, taskCounter.incrementAndGet());
+		}
+
+		@Override
+		public void run(){
+			try {
+				if(nbEdit == 0)
+					check(entry);
+				else
+					explore(entry, nbEdit);
+			} catch (RuntimeException | Error e) { // e.g. an OutOfMemoryError. The results of this shard would be incomplete,
+				//	so the worker ends: the coordinator sees the connection lost and reports the failure of the enumeration
+				System.out.println("Exception is caught in the exploration of a clustering of the shard " + shardId);
+				e.printStackTrace();
+				System.exit(1);
+			} catch (IOException e) {
+				System.out.println("shard " + shardId + ": the connection to the coordinator is lost");
+				e.printStackTrace();
+				stopBudget.set(0);
+			}
+		}
+	}
+
+
+
+	// It schedules the exploration of 'entry' with 'nbEdit', unless the worker is stopped
+	void schedule(EnumerationBFS.FrontierEntry entry, int nbEdit){
+		try {
+			executor.execute(new ShardTask(entry, nbEdit));
+		} catch (RejectedExecutionException e) {
+			// the worker is stopped, so the task is cancelled like the queued ones
+		}
+	}
+
+
+
+	// It checks whether a clustering received from the coordinator is new. If so, it is accepted by this shard and explored
+	void check(EnumerationBFS.FrontierEntry entry) throws IOException {
+		if(!ownedFingerprints.add(entry.c)){ // already discovered
+			sendDone(1, 0);
+			return;
+		}
+		synchronized(acceptedRecords){
+			acceptedRecords.add(new Record(entry.c, entry.generation));
+		}
+		sendDone(0, 1); // as soon as it is accepted, so that the coordinator can check the solution limit
+		schedule(entry, 1);
+	}
+
+
+
+	// It explores an accepted clustering with 'nbEdit', as 'EnumerationBFS.explore()' does, then schedules it with the next edit distance.
+	//	The 1-edit operations are applied by a single scan (see 'OneEditPlateauEnumeration'), but the plateau is not traversed here,
+	//	since its clusterings are owned by the other shards: each one is traversed by its owner
+	void explore(EnumerationBFS.FrontierEntry entry, int nbEdit) throws IOException {
+		if(stopBudget.get() <= 0){
+			sendDone(1, 0);
+			return;
+		}
+
+		List<Clustering> found;
+		double execTime;
+		if(nbEdit == 1 && !isBruteForce){
+			OneEditPlateauEnumeration plateauEnum = new OneEditPlateauEnumeration(adjMat, entry.c);
+			plateauEnum.setMaxDistance(1);
+			plateauEnum.setDeadline(deadline);
+			plateauEnum.setSolutionBudget(stopBudget);
+			plateauEnum.enumerate();
+			found = plateauEnum.foundClusterings;
+			execTime = plateauEnum.execTime;
+		}
+		else {
+			MyGenericEnumeration myEnum = new MyGenericEnumeration(nbEdit, nbEdit, adjMat, entry.c, entry.generation+1, isBruteForce);
+			myEnum.setDeadline(deadline);
+			myEnum.setSolutionBudget(stopBudget);
+			myEnum.setFilterStatistics(filterStatistics);
+			myEnum.enumerate();
+			found = new ArrayList<Clustering>(myEnum.foundClusterings);
+			execTime = myEnum.execTimesByNbEdit[nbEdit-1];
+		}
+		entry.exploredNbEdit = nbEdit;
+		entry.addExploration(found.size(), execTime);
+
+		List<Record> solutions = new ArrayList<Record>(found.size());
+		for(Clustering c1 : found)
+			solutions.add(new Record(c1, entry.generation+1, entry.yield)); // the yield of a new solution is predicted from its parent
+		// the children are sent before the end of the processing of their parent, so that the coordinator never sees
+		//	an empty frontier before the end of the enumeration
+		if(solutions.size() > 0){
+			synchronized(out){
+				out.write(ShardProtocol.encodeRecords(ShardProtocol.SOLUTIONS, solutions));
+				out.flush();
+			}
+		}
+
+		if(nbEdit < maxNbEdit)
+			schedule(entry, nbEdit+1);
+		else
+			sendDone(1, 0);
+	}
+
+
+	void sendDone(int nbDone, int nbAccepted) throws IOException {
+		synchronized(out){
+			out.writeByte(ShardProtocol.DONE);
+			out.writeInt(nbDone);
+			out.writeInt(nbAccepted);
+			out.flush();
+		}
+	}
+
+}
@@ -0,0 +1,54 @@
+package rns.utils;
+
+
+/**
+ * Connectivity tests on small undirected graphs (at most 64 vertices), represented by one bit mask per vertex:
+ *   the bit j of 'adjMasks[i]' is set when the vertices i and j are adjacent.
+ *   A breadth-first search then visits a whole level at once by OR-ing the masks of its vertices.
+ *
+ * The graphs of the moving nodes (at most d vertices) and of their source and target clusters (at most 2d vertices) are small enough,
+ *   and the masks can be kept in reusable buffers, so the tests do not allocate anything.
+ */
+public class BitMaskGraph {
+
+	public static final int MAX_NB_VERTEX = 64;
+
+
+	// It removes all the edges of the first 'size' vertices
+	public static void clear(long[] adjMasks, int size){
+		for(int i=0; i<size; i++)
+			adjMasks[i] = 0L;
+	}
+
+
+	public static void addEdge(long[] adjMasks, int u, int v){
+		adjMasks[u] |= 1L << v;
+		adjMasks[v] |= 1L << u;
+	}
+
+
+	/**
+	 * It returns true if the graph induced by the first 'size' vertices is connected (an empty graph or a single vertex is connected).
+	 *
+	 * @param adjMasks
+	 * @param size
+	 * @return
+	 */
+	public static boolean isConnected(long[] adjMasks, int size){
+		if(size<=1)
+			return(true);
+
+		long all = (size == MAX_NB_VERTEX) ? -1L : (1L << size)-1;
+		long visited = 1L; // starting from the vertex 0
+		long frontier = 1L;
+		while(frontier != 0L){
+			long next = 0L;
+			for(long f = frontier; f != 0L; f &= f-1) // for each vertex of the frontier
+				next |= adjMasks[Long.numberOfTrailingZeros(f)];
+			frontier = next & ~visited;
+			visited |= frontier;
+		}
+		return((visited & all) == all);
+	}
+
+}
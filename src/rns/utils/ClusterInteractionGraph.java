@@ -0,0 +1,69 @@
+package rns.utils;
+
+import java.util.List;
+
+
+/**
+ * The interaction graph of the clusters of a clustering: two clusters are adjacent when at least one link (of non-zero weight, whatever its sign)
+ *   connects them. It is obtained from the absolute weight sums of the nodes in the clusters (see 'MyCGraph'), in O(n*k).
+ *
+ * The moving nodes of an edit operation must be connected (see the pruning filter 'SOURCE_CONNECTIVITY'), and a link between two moving nodes
+ *   of different source clusters is a link between these clusters. So, the source clusters of an operation are connected in this graph,
+ *   and only the connected groups of clusters need to be considered as source clusters, instead of all the combinations of clusters.
+ */
+public class ClusterInteractionGraph {
+
+	public int nbCluster;
+	double[][] adjMat; // 'adjMat[i][j]' is 1 if the clusters i+1 and j+1 are adjacent, and 0 otherwise
+	int[] vertices; // the vertex ids 0, ..., nbCluster-1
+	int[] groups; // a single group, see 'ConnectedSubsets'
+
+
+	/**
+	 * @param g: the weight sums of the clustering, filled in for all its nodes
+	 */
+	public ClusterInteractionGraph(MyCGraph g){
+		nbCluster = g.c.getNbCluster();
+		int[] membership = g.c.membership;
+		adjMat = new double[nbCluster][nbCluster];
+		for(int u=0; u<g.n; u++){
+			int clusterId = membership[u];
+			if(clusterId == -1) // a removed node
+				continue;
+			double[] absWeightSums = g.absWeightSumInClusters[u];
+			double[] row = adjMat[clusterId-1];
+			for(int t=1; t<=nbCluster; t++)
+				if(t != clusterId && absWeightSums[t-1] > 0.0){
+					row[t-1] = 1.0;
+					adjMat[t-1][clusterId-1] = 1.0;
+				}
+		}
+
+		vertices = new int[nbCluster];
+		for(int i=0; i<nbCluster; i++)
+			vertices[i] = i;
+		groups = new int[nbCluster];
+	}
+
+
+	public boolean isAdjacent(int clusterId1, int clusterId2){
+		return(adjMat[clusterId1-1][clusterId2-1] != 0.0);
+	}
+
+
+	/**
+	 * It returns the groups of 'size' clusters which induce a connected subgraph of the interaction graph.
+	 *
+	 * @param size
+	 * @return a list of cluster ids, in ascending order in each group
+	 */
+	public List<int[]> getConnectedClusterGroups(int size){
+		ConnectedSubsets connectedSubsets = new ConnectedSubsets(vertices, groups, new int[]{size}, adjMat);
+		List<int[]> clusterGroups = connectedSubsets.generate();
+		for(int[] clusterIds : clusterGroups)
+			for(int i=0; i<clusterIds.length; i++)
+				clusterIds[i]++; // from the vertex ids to the cluster ids
+		return(clusterGroups);
+	}
+
+}
@@ -0,0 +1,104 @@
+package rns.utils;
+
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import myUtils.Clustering;
+
+
+/**
+ * A concurrent set of clusterings, shared by all the enumeration threads, in which a clustering is checked and inserted in O(n).
+ *
+ * A clustering is represented by its fingerprint: its membership array where the clusters are renumbered
+ *   in the order of their first node (e.g. [3,3,1,2,1] becomes [1,1,2,3,2]). Two clusterings are equal (see 'Clustering.equals()')
+ *   if and only if their fingerprints are equal, so there is no false positive, unlike a hash value alone.
+ *   The set is backed by a 'ConcurrentHashMap', whose lookups do not lock and whose insertions lock only a bin of the table.
+ */
+public class ClusteringFingerprintSet {
+
+	private final Set<Fingerprint> fingerprints = ConcurrentHashMap.newKeySet();
+
+
+
+	public static final class Fingerprint {
+		private final int[] canonicalMembership;
+		private final int hash;
+
+		public Fingerprint(int[] membership){
+			canonicalMembership = new int[membership.length];
+			int maxClusterId = 0;
+			for(int clusterId : membership)
+				maxClusterId = Math.max(maxClusterId, clusterId);
+			int[] newIds = new int[maxClusterId+1]; // the new id of each cluster id, 0 if not renumbered yet
+			int nbCluster = 0;
+			for(int i=0; i<membership.length; i++){
+				int clusterId = membership[i];
+				if(clusterId == -1){ // a removed node
+					canonicalMembership[i] = -1;
+					continue;
+				}
+				if(newIds[clusterId] == 0)
+					newIds[clusterId] = ++nbCluster;
+				canonicalMembership[i] = newIds[clusterId];
+			}
+			hash = Arrays.hashCode(canonicalMembership);
+		}
+
+		/**
+		 * It returns the shard owning this fingerprint among 'nbShard' shards (see 'EnumerationBFSDistributed'). 
+		 *   The hash value is mixed first, since the low bits of 'Arrays.hashCode()' are not well distributed.
+		 *
+		 * @param nbShard
+		 * @return a shard id between 0 and nbShard-1
+		 */
+		public int getShard(int nbShard){
+			int h = hash * 0x9E3779B9;
+			return(Math.floorMod(h ^ (h >>> 16), nbShard));
+		}
+
+		@Override
+		public int hashCode(){
+			return(hash);
+		}
+
+		@Override
+		public boolean equals(Object o){
+			if(o == this)
+				return(true);
+			if(!(o instanceof Fingerprint))
+				return(false);
+			Fingerprint f = (Fingerprint) o;
+			return(hash == f.hash && Arrays.equals(canonicalMembership, f.canonicalMembership));
+		}
+	}
+
+
+
+	// It returns true if 'c' was not in the set
+	public boolean add(Clustering c){
+		return(fingerprints.add(new Fingerprint(c.membership)));
+	}
+
+
+	public boolean contains(Clustering c){
+		return(fingerprints.contains(new Fingerprint(c.membership)));
+	}
+
+
+	public boolean remove(Clustering c){
+		return(fingerprints.remove(new Fingerprint(c.membership)));
+	}
+
+
+	public void addAll(Iterable<Clustering> clusterings){
+		for(Clustering c : clusterings)
+			add(c);
+	}
+
+
+	public int size(){
+		return(fingerprints.size());
+	}
+
+}
@@ -48,4 +48,40 @@ public class Combination2 {
 		return collector;
 	}
 	
+	
+	
+	/**
+	 * The same as 'generate(valuesList)', except that the values greater than or equal to 'firstNewId' are the labels of new (empty) clusters,
+	 *   which are interchangeable. So, only one labeling is generated for each way of assigning the new clusters: 
+	 *   the first new cluster met in the list takes the label 'firstNewId', the second one 'firstNewId'+1, and so on.
+	 *   This removes the m! relabelings of a combination with m new clusters.
+	 * 
+	 * @param valuesList: the possible values of each position
+	 * @param firstNewId
+	 * @return
+	 */
+	public static List<ArrayList<Integer>> generate(ArrayList<List<Integer>> valuesList, int firstNewId) {
+		List<ArrayList<Integer>> collector = new ArrayList<ArrayList<Integer>>();
+		helper(collector, valuesList, new ArrayList<Integer>(valuesList.size()), firstNewId);
+		return collector;
+	}
+	
+	
+	// 'nextNewId' is the label of the next new cluster, i.e. the labels firstNewId..(nextNewId-1) are already used in 'curr'
+	private static void helper(List<ArrayList<Integer>> collector, ArrayList<List<Integer>> valuesList, ArrayList<Integer> curr,
+			int nextNewId) {
+		int position = curr.size();
+		if(position == valuesList.size()){
+			collector.add(new ArrayList<Integer>(curr));
+			return;
+		}
+		for(Integer val : valuesList.get(position)){
+			if(val > nextNewId) // a new cluster which is not the next one: a relabeling
+				continue;
+			curr.add(val);
+			helper(collector, valuesList, curr, val == nextNewId ? nextNewId+1 : nextNewId);
+			curr.remove(position);
+		}
+	}
+	
 }
@@ -0,0 +1,163 @@
+package rns.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+
+/**
+ * It enumerates the vertex subsets which induce a connected subgraph, with a given number of vertices in each group of vertices.
+ *   Two vertices are adjacent when the link weight between them is not zero (whatever its sign).
+ *
+ * The subsets are grown along the neighbors, as in the ESU algorithm (Wernicke, 2006): starting from each vertex v,
+ *   a subset is extended only with the vertices greater than v which are adjacent to it, so each connected subset is generated exactly once,
+ *   and the disconnected subsets are never generated. A vertex whose group is full is never added, since it cannot belong to any solution.
+ *
+ * Since a subset is grown one vertex at a time, an optional bound (see 'PartialSubsetBound') can stop the growth as soon as 
+ *   no subset containing the current vertices can be a solution: the whole branch is then cut.
+ */
+public class ConnectedSubsets {
+
+	/**
+	 * A test on a partial subset, which must return false only if no subset of size k containing it can be a solution.
+	 */
+	public interface PartialSubsetBound {
+		boolean canBeCompleted(int[] vertexIds, int size);
+	}
+
+	int m; // the number of vertices
+	int[] vertices; // the vertex ids, in ascending order
+	int[] groups;
+	int[] quotas;
+	int k; // the size of the subsets, i.e. the sum of the quotas
+	int[][] neighbors; // the neighbors of each vertex (positions in 'vertices')
+
+	boolean[] inSubset;
+	int[] nbSubsetNeighbors; // the number of neighbors of each vertex in the current subset
+	int[] groupCounts;
+	int[] subset;
+	List<int[]> collector;
+	PartialSubsetBound bound = null;
+	int[] subsetVertexIds; // the vertex ids of 'subset', passed to 'bound'
+
+
+	/**
+	 * @param vertices: the vertex ids, in ascending order
+	 * @param groups: the group index of each vertex of 'vertices'
+	 * @param quotas: the number of vertices to select in each group
+	 * @param adjMat
+	 */
+	public ConnectedSubsets(int[] vertices, int[] groups, int[] quotas, double[][] adjMat){
+		this.vertices = vertices;
+		this.groups = groups;
+		this.quotas = quotas;
+		m = vertices.length;
+		k = 0;
+		for(int q : quotas)
+			k += q;
+
+		neighbors = new int[m][];
+		int[] buffer = new int[m];
+		for(int i=0; i<m; i++){
+			double[] row = adjMat[vertices[i]];
+			int deg = 0;
+			for(int j=0; j<m; j++)
+				if(j != i && row[vertices[j]] != 0.0)
+					buffer[deg++] = j;
+			neighbors[i] = new int[deg];
+			System.arraycopy(buffer, 0, neighbors[i], 0, deg);
+		}
+	}
+
+
+	public void setBound(PartialSubsetBound bound_){
+		this.bound = bound_;
+	}
+
+
+	/**
+	 * It returns the connected subsets of size k having exactly 'quotas[g]' vertices in each group g.
+	 *
+	 * @return a list of vertex ids, in ascending order in each subset
+	 */
+	public List<int[]> generate(){
+		collector = new ArrayList<int[]>();
+		if(k == 0)
+			return(collector);
+		inSubset = new boolean[m];
+		nbSubsetNeighbors = new int[m];
+		groupCounts = new int[quotas.length];
+		subset = new int[k];
+		subsetVertexIds = new int[k];
+
+		for(int v=0; v<m; v++){
+			if(quotas[groups[v]] == 0)
+				continue;
+			int[] ext = new int[neighbors[v].length];
+			int extSize = 0;
+			for(int u : neighbors[v])
+				if(u > v)
+					ext[extSize++] = u;
+			add(v, 0);
+			if(isCompletable(1))
+				extend(1, ext, extSize, v);
+			remove(v);
+		}
+		return(collector);
+	}
+
+
+	private void extend(int subsetSize, int[] ext, int extSize, int v){
+		if(subsetSize == k){ // all the groups are full, since no group exceeds its quota
+			int[] nodeIds = new int[k];
+			for(int i=0; i<k; i++)
+				nodeIds[i] = vertices[subset[i]];
+			Arrays.sort(nodeIds);
+			collector.add(nodeIds);
+			return;
+		}
+
+		while(extSize > 0){
+			int w = ext[--extSize];
+			if(groupCounts[groups[w]] == quotas[groups[w]])
+				continue;
+
+			// the new extension: the remaining candidates and the exclusive neighbors of w (i.e. not adjacent to the current subset)
+			int[] ext2 = new int[extSize+neighbors[w].length];
+			System.arraycopy(ext, 0, ext2, 0, extSize);
+			int extSize2 = extSize;
+			for(int u : neighbors[w])
+				if(u > v && !inSubset[u] && nbSubsetNeighbors[u] == 0)
+					ext2[extSize2++] = u;
+
+			add(w, subsetSize);
+			if(isCompletable(subsetSize+1))
+				extend(subsetSize+1, ext2, extSize2, v);
+			remove(w);
+		}
+	}
+
+
+	private boolean isCompletable(int subsetSize){
+		return(bound == null || bound.canBeCompleted(subsetVertexIds, subsetSize));
+	}
+
+
+	private void add(int w, int position){
+		subset[position] = w;
+		subsetVertexIds[position] = vertices[w];
+		inSubset[w] = true;
+		groupCounts[groups[w]]++;
+		for(int u : neighbors[w])
+			nbSubsetNeighbors[u]++;
+	}
+
+
+	private void remove(int w){
+		inSubset[w] = false;
+		groupCounts[groups[w]]--;
+		for(int u : neighbors[w])
+			nbSubsetNeighbors[u]--;
+	}
+
+}
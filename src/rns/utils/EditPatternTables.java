@@ -0,0 +1,186 @@
+package rns.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+
+/**
+ * The combinatorial patterns used in the enumeration of the edit operations. They depend only on small integers,
+ *   so they are computed once, at the first request, and then shared by all the threads:
+ * <ul>
+ * <li> the source cluster sizes for a given number of moving nodes and source clusters (all the ways of distributing
+ * 		'nbEdit' moving nodes over 'nbSourceCluster' source clusters, each of them having at least one moving node),
+ * <li> the target indexes of the moving nodes whose target cluster is unknown (i.e. new or not decided yet), for a given number of such nodes.
+ * </ul>
+ *
+ * Each table is stored in a single flat array, row after row. The tables are not modified after their creation.
+ */
+public class EditPatternTables {
+
+	private static final ConcurrentHashMap<Integer, Table> sourceClusterSizesTables = new ConcurrentHashMap<>();
+	private static final ConcurrentHashMap<Integer, Table> targetIndexesTables = new ConcurrentHashMap<>();
+
+
+
+	/**
+	 * An immutable table of 'nbRow' rows of 'width' integers.
+	 */
+	public static class Table {
+		private final int[] data;
+		public final int nbRow;
+		public final int width;
+
+		Table(List<int[]> rows, int width_){
+			width = width_;
+			nbRow = rows.size();
+			data = new int[nbRow*width];
+			for(int r=0; r<nbRow; r++)
+				System.arraycopy(rows.get(r), 0, data, r*width, width);
+		}
+
+		public int get(int row, int col){
+			return(data[row*width+col]);
+		}
+
+		// it returns a copy of the row, which can be modified by the caller
+		public int[] getRow(int row){
+			return(Arrays.copyOfRange(data, row*width, (row+1)*width));
+		}
+	}
+
+
+
+	/**
+	 * It returns the distinct source cluster sizes for 'nbEdit' moving nodes from 'nbSourceCluster' source clusters,
+	 *   in the order of their first occurrence in the permutations of 'UniquePartitionSize.generate(nbEdit, nbSourceCluster)'.
+	 *
+	 * @param nbEdit
+	 * @param nbSourceCluster
+	 * @return a table with a row for each pattern, and a column for each source cluster
+	 */
+	public static Table getSourceClusterSizes(int nbEdit, int nbSourceCluster){
+		return(sourceClusterSizesTables.computeIfAbsent(nbEdit*64+nbSourceCluster,
+				k -> buildSourceClusterSizes(nbEdit, nbSourceCluster)));
+	}
+
+
+	static Table buildSourceClusterSizes(int nbEdit, int nbSourceCluster){
+		Set<List<Integer>> uniqueSizes = new LinkedHashSet<>(); // removes the duplicated permutations, and keeps the order
+		List<int[]> rows = new ArrayList<>();
+		for(int[] a : UniquePartitionSize.generate(nbEdit, nbSourceCluster)){
+			for(int[] perm : Permutation.permute(a)){
+				List<Integer> key = new ArrayList<>();
+				for(int size : perm)
+					key.add(size);
+				if(uniqueSizes.add(key))
+					rows.add(perm);
+			}
+		}
+		return(new Table(rows, nbSourceCluster));
+	}
+
+
+
+	/**
+	 * It returns all the ways of assigning target indexes to 'nbUnknown' moving nodes whose target cluster is unknown.
+	 * In a row, the i.th value is the target index (starting from 1) of the i.th unknown node.
+	 * A target index only tells which nodes go to the same cluster, so two rows differing by a renumbering of the target indexes are equivalent:
+	 *   only the row where the target indexes appear in ascending order of their first occurrence is kept (e.g. [1,2,1], but not [2,1,2]).
+	 * The rows are in the same order as in the nested loops on 'nbPossibleGroups', 'UniquePartitionSize.generate(nbUnknown, nbPossibleGroups)'
+	 *   and 'helperAllPossibleTargetIndexesByComb()'.
+	 *
+	 * @param nbUnknown
+	 * @return a table with a row for each assignment, and a column for each unknown node
+	 */
+	public static Table getTargetIndexes(int nbUnknown){
+		return(targetIndexesTables.computeIfAbsent(nbUnknown, k -> buildTargetIndexes(nbUnknown)));
+	}
+
+
+	static Table buildTargetIndexes(int nbUnknown){
+		List<int[]> rows = new ArrayList<>();
+		for(int nbPossibleGroups=1; nbPossibleGroups<=nbUnknown; nbPossibleGroups++){
+			for(int[] partitionSize : UniquePartitionSize.generate(nbUnknown, nbPossibleGroups)){ // let say partitionSize = [3,1] for nbPossibleGroups=2
+				for(ArrayList<int[]> indexesByPartitionSize : helperAllPossibleTargetIndexesByComb(nbUnknown, partitionSize)){
+					int[] row = new int[nbUnknown];
+					for(int targetIndex=1; targetIndex<=partitionSize.length; targetIndex++){
+						for(int i : indexesByPartitionSize.get(targetIndex-1))
+							row[i] = targetIndex;
+					}
+					if(isCanonicalTargetIndexes(row))
+						rows.add(row);
+				}
+			}
+		}
+		return(new Table(rows, nbUnknown));
+	}
+
+
+
+	// It returns true if the target indexes of 'row' appear in ascending order of their first occurrence, i.e. 1 first, then 2, etc.
+	static boolean isCanonicalTargetIndexes(int[] row){
+		int max = 0;
+		for(int targetIndex : row){
+			if(targetIndex > max+1)
+				return(false);
+			if(targetIndex == max+1)
+				max++;
+		}
+		return(true);
+	}
+
+
+
+	/**
+	 * It splits the indexes 0..(nbUnknown-1) into groups whose sizes are given by 'partitionSize', in all the possible ways.
+	 *   An example of output: [ [[0],[1,2],[3,4]], [[0],[1,3],[2,4]], ... ] for nbUnknown=5 and partitionSize=[1,2,2]
+	 *
+	 * @param nbUnknown
+	 * @param partitionSize
+	 * @return
+	 */
+	public static List<ArrayList<int[]>> helperAllPossibleTargetIndexesByComb(int nbUnknown, int[] partitionSize){
+		List<ArrayList<int[]>> collector = new ArrayList<ArrayList<int[]>>();
+
+		int[] targetIndexes = ArrayOperations.seq(0, nbUnknown-1);
+
+		for(int nbNodeInPartition : partitionSize){ // let say partitionSize = [3,1] for nbPossibleGroups=2
+
+			if(collector.size()>0){
+				List<ArrayList<int[]>> collector2 = new ArrayList<ArrayList<int[]>>();
+
+				// ex: collector: {{{1,3}},{{2,5}}}
+				for(ArrayList<int[]> arrayOfExistingIndexes : collector){
+					int[] existingIndexes = ArrayOperations.mergeMultipleArrays(arrayOfExistingIndexes);
+					int[] remainingTargetIndexes = ArrayOperations.removeMultipleElements(targetIndexes, existingIndexes);
+					List<int[]> combTargetIndexes = Combination.generate(remainingTargetIndexes, nbNodeInPartition);
+					// ex: 	existingIndexes: {1,3}, combNodeIndexesToMove: {{2,4},{2,5}}
+					// output: {{{1,3},{2,4}},{{1,3},{2,5}}}
+
+					for(int[] inds : combTargetIndexes){
+						ArrayList<int[]> newArray = new ArrayList<int[]>(arrayOfExistingIndexes);
+						newArray.add(inds);
+						collector2.add(newArray);
+					}
+				}
+
+				collector = collector2;
+
+			} else {
+				List<int[]> combIndexes = Combination.generate(targetIndexes,nbNodeInPartition); //ex: combNodeIds=[[1,2],[1,3],[2,3]]
+				for(int[] indexes : combIndexes){
+					ArrayList<int[]> temp = new ArrayList<>();
+					temp.add(indexes);
+					collector.add(temp);
+				}
+			}
+		}
+
+		return(collector);
+	}
+
+}
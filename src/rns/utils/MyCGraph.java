@@ -1,44 +1,228 @@
 package rns.utils;
 
 import java.util.*; 
+import java.util.concurrent.atomic.AtomicLong;
 import myUtils.Clustering;
 
 public class MyCGraph {
+	// When the tables are derived from those of the parent clustering, the rounding errors of the updates accumulate over the generations.
+	//	So, we rebuild them from scratch after this number of successive derivations
+	public static int MAX_NB_DERIVATION = 32;
+	// the number of tables kept for the next enumeration tasks. The pool is shared by all the threads, so that the tables are recycled
+	//	even when each task runs in a new thread (see 'ThreadPerTaskExecutor')
+	static int POOL_SIZE = 2*Runtime.getRuntime().availableProcessors();
+	private static final ArrayDeque<MyCGraph> pool = new ArrayDeque<MyCGraph>(); // accessed only when holding its lock
+	// The memory (in bytes) of the tables kept for the derivation of the tables of the children (see 'retain()'). 
+	//	Beyond it, the least recently used tables are dropped, and the tables of their children are built from scratch
+	public static long MAX_RETAINED_MEMORY = Runtime.getRuntime().maxMemory()/8;
+	// table id => retained tables, in access order
+	private static final LinkedHashMap<Long, MyCGraph> retained = new LinkedHashMap<Long, MyCGraph>(16, 0.75f, true);
+	private static long retainedMemory = 0; // accessed only when holding the lock of 'retained'
+	private static final AtomicLong idCounter = new AtomicLong(0);
+	
+	public long id; // a new id is assigned each time the tables are filled in, so that it identifies their content
 	public int n;
     public Clustering c;
+    public int nbColumn; // k+d: the clusters of 'c' and at most d new clusters (d is the number of moving vertices)
+    int capacity; // the allocated number of columns, which is at least 'nbColumn'
+    int nbDerivation; // the number of successive derivations since the last build from scratch
     public double[][] posSumInClusters;
     public double[][] weightSumInClusters;
     public double[][] absWeightSumInClusters;
 
     
-	public MyCGraph(int n_, Clustering c_){
+	public MyCGraph(int n_, Clustering c_, int nbNewCluster){
 		n = n_;
 		c = c_;
-		posSumInClusters = new double[c.n][c.getNbCluster()+n]; 
-		// +n for new clusters (normally it is sufficient to add k new clusters, where k is the number of moving vertices)
-		weightSumInClusters = new double[c.n][c.getNbCluster()+n];
-		absWeightSumInClusters = new double[c.n][c.getNbCluster()+n];
-		for(int i=0; i<c.n; i++){
-    		for(int j=1; j<=(c.getNbCluster()+n); j++){ // +n for new clusters
-    			posSumInClusters[i][j-1] = 0.0;
-    			weightSumInClusters[i][j-1] = 0.0;
-    			absWeightSumInClusters[i][j-1] = 0.0;
-    		}
+		nbColumn = c.getNbCluster()+nbNewCluster;
+		capacity = nbColumn+nbNewCluster; // a small margin, so that the tables can be reused for clusterings having more clusters
+		posSumInClusters = new double[c.n][capacity]; 
+		weightSumInClusters = new double[c.n][capacity];
+		absWeightSumInClusters = new double[c.n][capacity];
+	}
+	
+	
+	/**
+	 * It returns a table object for the clustering 'c_', reused from the pool when possible.
+	 * The tables are not filled in: see the methods 'fillInNodeToWeightedDegreeSum()'.
+	 * 
+	 * @param n_
+	 * @param c_
+	 * @param nbNewCluster: the maximum number of new clusters, i.e. the maximum number of moving vertices
+	 * @return
+	 */
+	public static MyCGraph acquire(int n_, Clustering c_, int nbNewCluster){
+		int nbColumn_ = c_.getNbCluster()+nbNewCluster;
+		MyCGraph g;
+		while(true){
+			synchronized(pool){
+				g = pool.pollFirst();
+			}
+			if(g == null)
+				break;
+			if(g.n == n_ && g.capacity >= nbColumn_){
+				g.c = c_;
+				g.nbColumn = nbColumn_;
+				return(g);
+			}
+		}
+		return(new MyCGraph(n_, c_, nbNewCluster));
+	}
+	
+	
+	/**
+	 * It gives back the tables to the pool. 
+	 * The caller must ensure that they are not referenced anymore, and that they have not been retained (see 'retain()').
+	 */
+	public void release(){
+		c = null;
+		synchronized(pool){
+			if(pool.size() < POOL_SIZE)
+				pool.addFirst(this);
+		}
+	}
+	
+	
+	/**
+	 * It keeps the tables of 'c', so that the tables of its children can be derived from them when their exploration starts.
+	 * A child only holds the id of these tables (see 'Clustering.setParentGraphId()'), not the tables themselves: so, a clustering
+	 *   waiting for its exploration does not pin any table, and the retained tables are bounded by MAX_RETAINED_MEMORY.
+	 * The retained tables are never given back to the pool, since they may be read at any time by the exploration of a child.
+	 */
+	public void retain(){
+		synchronized(retained){
+			if(retained.put(id, this) == null)
+				retainedMemory += getMemory();
+			Iterator<MyCGraph> it = retained.values().iterator();
+			while(retainedMemory > MAX_RETAINED_MEMORY && it.hasNext()){ // the least recently used first
+				MyCGraph g = it.next();
+				it.remove();
+				retainedMemory -= g.getMemory();
+			}
+		}
+	}
+	
+	
+	/**
+	 * It drops the retained tables whose id is 'id_' (see 'retain()'), when they are not needed anymore.
+	 * They are not given back to the pool, since another thread may still be reading them.
+	 * 
+	 * @param id_
+	 */
+	public static void dropRetained(long id_){
+		synchronized(retained){
+			MyCGraph g = retained.remove(id_);
+			if(g != null)
+				retainedMemory -= g.getMemory();
+		}
+	}
+	
+	
+	/**
+	 * It returns the retained tables whose id is 'id_' (see 'retain()'), or null if they have been dropped.
+	 * 
+	 * @param id_: the id of the tables, or -1 for none
+	 * @return
+	 */
+	public static MyCGraph getRetained(long id_){
+		if(id_ == -1)
+			return(null);
+		synchronized(retained){
+			return(retained.get(id_));
 		}
-
+	}
+	
+	
+	// the approximate memory of the tables, in bytes
+	long getMemory(){
+		return(3L*n*(16+8L*capacity));
 	}
 
     
     public void fillInNodeToWeightedDegreeSum(double[][] d){
-    	//ArrayList<ArrayList<Integer>> clusters = c.getClustersInArrayFormat();
+    	id = idCounter.incrementAndGet();
+    	nbDerivation = 0;
+    	// the nodes are grouped by cluster, so that each sum is a reduction over a contiguous range (see 'WeightSumKernels')
+    	int nbCluster = c.getNbCluster();
+    	int[] clusterStarts = new int[nbCluster+1];
+    	int[] nodes = WeightSumKernels.groupNodesByCluster(c.membership, nbCluster, clusterStarts);
+    	
+    	for(int i=0; i<n; i++){
+    		WeightSumKernels.sumByCluster(d[i], i, nodes, clusterStarts, nbCluster, 
+    				posSumInClusters[i], weightSumInClusters[i], absWeightSumInClusters[i]);
+    		// the columns of the new clusters
+    		Arrays.fill(posSumInClusters[i], nbCluster, nbColumn, 0.0);
+    		Arrays.fill(weightSumInClusters[i], nbCluster, nbColumn, 0.0);
+    		Arrays.fill(absWeightSumInClusters[i], nbCluster, nbColumn, 0.0);
+    	}
+    }
+    
+    
+    /**
+     * It derives the tables of 'c' from those of its parent clustering, 
+     * 	 where 'c' is obtained by moving the nodes 'movedNodeIds' in the parent clustering.
+     * Instead of summing the weights of all the nodes in O(n^2), we copy the columns of the parent 
+     *   (with their new cluster ids, since some clusters may disappear) and then update only the contributions of the moved nodes in O(n.d).
+     * 
+     * @param d: adjacency matrix
+     * @param parent: the tables of the parent clustering
+     * @param movedNodeIds
+     */
+    public void fillInNodeToWeightedDegreeSum(double[][] d, MyCGraph parent, int[] movedNodeIds){
+    	if(parent.nbDerivation >= MAX_NB_DERIVATION){
+    		fillInNodeToWeightedDegreeSum(d);
+    		return;
+    	}
+    	id = idCounter.incrementAndGet();
+    	nbDerivation = parent.nbDerivation+1;
+    	
+    	int[] parentMembership = parent.c.membership;
+    	int[] membership = c.membership;
+    	int parentNbCluster = parent.c.getNbCluster();
+    	
+    	boolean[] isMoved = new boolean[n];
+    	for(int u : movedNodeIds)
+    		isMoved[u] = true;
+    	
+    	// cluster id in the parent clustering => cluster id in 'c' (0 if the cluster disappears, i.e. all its nodes move)
+    	int[] clusterIdMap = new int[parentNbCluster+1];
+    	for(int v=0; v<n; v++){
+    		if(!isMoved[v])
+    			clusterIdMap[parentMembership[v]] = membership[v];
+    	}
+    	
     	for(int i=0; i<n; i++){
-    		for(int j=0; j<n ; j++){
-    			if(i!=j){
-	    			int clu_j = c.membership[j];
-	    			if(d[i][j]>0)
-	    				posSumInClusters[i][clu_j-1] += d[i][j];
-	    			weightSumInClusters[i][clu_j-1] += d[i][j];
-	    			absWeightSumInClusters[i][clu_j-1] += Math.abs(d[i][j]);
+    		double[] pos = posSumInClusters[i];
+    		double[] weight = weightSumInClusters[i];
+    		double[] abs = absWeightSumInClusters[i];
+    		Arrays.fill(pos, 0, nbColumn, 0.0);
+    		Arrays.fill(weight, 0, nbColumn, 0.0);
+    		Arrays.fill(abs, 0, nbColumn, 0.0);
+    		
+    		for(int clu=1; clu<=parentNbCluster; clu++){
+    			int newClu = clusterIdMap[clu];
+    			if(newClu > 0){
+    				pos[newClu-1] = parent.posSumInClusters[i][clu-1];
+    				weight[newClu-1] = parent.weightSumInClusters[i][clu-1];
+    				abs[newClu-1] = parent.absWeightSumInClusters[i][clu-1];
+    			}
+    		}
+    		
+    		for(int u : movedNodeIds){
+    			double w = d[i][u];
+    			if(u != i && w != 0.0){
+    				int oldClu = clusterIdMap[parentMembership[u]]; // the contributions of a disappearing cluster are already dropped
+    				if(oldClu > 0){
+    					if(w>0)
+    						pos[oldClu-1] -= w;
+    					weight[oldClu-1] -= w;
+    					abs[oldClu-1] -= Math.abs(w);
+    				}
+    				int newClu = membership[u];
+    				if(w>0)
+    					pos[newClu-1] += w;
+    				weight[newClu-1] += w;
+    				abs[newClu-1] += Math.abs(w);
     			}
     		}
     	}
@@ -73,4 +257,4 @@ public class MyCGraph {
         
     } 
 	  
-} 
\ No newline at end of file
+} 
@@ -0,0 +1,134 @@
+package rns.utils;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+
+/**
+ * The hit rate and the cost of the pruning filters applied to the node subsets in 'MyGenericEnumeration.enumerateByTargetClusters()',
+ *   collected separately for each edit distance, since the selectivity of a filter depends strongly on it.
+ *
+ * Since each filter is a test applied independently to a single node subset, the order in which the filters are applied
+ *   does not change the node subsets which pass all of them. So, the filters can be applied in the order minimizing the expected cost,
+ *   i.e. by increasing cost per pruned node subset (cheap and selective filters first). A filter which has never pruned any node subset
+ *   is moved to the end: it is still applied to the remaining node subsets (skipping it could change the results),
+ *   but only after all the other filters.
+ *
+ * The counters are shared by the threads processing the same graph.
+ */
+public class PruningFilterStatistics {
+
+	// the filter ids, which also give the default order
+	public static final int SOURCE_CONNECTIVITY = 0;
+	public static final int FAKE_LINK_CONNECTIVITY = 1;
+	public static final int NON_NEGATIVE_INTERNAL_LINKS = 2;
+	public static final int FAKE_EDIT = 3;
+	public static final int EXTERNAL_LINKS_UP_TO_3EDIT = 4;
+	public static final int EXTERNAL_LINKS = 5;
+	public static final int INTERACTION_CONNECTIVITY = 6;
+	public static final int MVMO = 7;
+	public static final int FAKE_TARGET_CONNECTIVITY = 8;
+	public static final int EXTERNAL_LINKS_AFTER_TARGET_INDEXES = 9;
+	public static final int ELIGIBILITY = 10;
+	public static final int ZERO_DELTA_BOUND = 11;
+	public static final int NB_FILTER = 12;
+
+	// the number of evaluations of a filter before its statistics are trusted. Until then, it is applied first in order to collect them
+	public static int MIN_NB_EVALUATION = 64;
+	// the orders are recomputed after this number of requests
+	public static int REORDER_PERIOD = 256;
+
+	LongAdder[][] nbEvaluation;
+	LongAdder[][] nbPruned;
+	LongAdder[][] elapsedNanos;
+	volatile double[][] scores; // the expected cost per pruned node subset, for each edit distance and filter
+	AtomicInteger nbRequest = new AtomicInteger();
+
+
+	public PruningFilterStatistics(int maxNbEdit){
+		nbEvaluation = new LongAdder[maxNbEdit+1][NB_FILTER];
+		nbPruned = new LongAdder[maxNbEdit+1][NB_FILTER];
+		elapsedNanos = new LongAdder[maxNbEdit+1][NB_FILTER];
+		for(int nbEdit=0; nbEdit<=maxNbEdit; nbEdit++){
+			for(int f=0; f<NB_FILTER; f++){
+				nbEvaluation[nbEdit][f] = new LongAdder();
+				nbPruned[nbEdit][f] = new LongAdder();
+				elapsedNanos[nbEdit][f] = new LongAdder();
+			}
+		}
+		scores = new double[maxNbEdit+1][NB_FILTER]; // all zero: the default order
+	}
+
+
+	public int getMaxNbEdit(){
+		return(nbEvaluation.length-1);
+	}
+
+
+	public void record(int nbEdit, int filterId, long nanos, boolean isPruned){
+		nbEvaluation[nbEdit][filterId].increment();
+		elapsedNanos[nbEdit][filterId].add(nanos);
+		if(isPruned)
+			nbPruned[nbEdit][filterId].increment();
+	}
+
+
+	/**
+	 * It returns the filters 'filterIds' sorted in the order in which they should be applied for d-edit operations with d='nbEdit'.
+	 *
+	 * @param nbEdit
+	 * @param filterIds: the filters applicable in the current context, in the default order
+	 * @return a new array
+	 */
+	public int[] order(int nbEdit, int... filterIds){
+		if(nbRequest.incrementAndGet() % REORDER_PERIOD == 0)
+			updateScores();
+
+		double[] s = scores[nbEdit];
+		int[] ordered = filterIds.clone();
+		for(int i=1; i<ordered.length; i++){ // insertion sort: there are only a few filters, and it is stable
+			int f = ordered[i];
+			int j = i-1;
+			while(j>=0 && s[ordered[j]] > s[f]){
+				ordered[j+1] = ordered[j];
+				j--;
+			}
+			ordered[j+1] = f;
+		}
+		return(ordered);
+	}
+
+
+	void updateScores(){
+		double[][] newScores = new double[scores.length][NB_FILTER];
+		for(int nbEdit=0; nbEdit<scores.length; nbEdit++){
+			for(int f=0; f<NB_FILTER; f++){
+				long nbEval = nbEvaluation[nbEdit][f].sum();
+				long nbPrun = nbPruned[nbEdit][f].sum();
+				if(nbEval < MIN_NB_EVALUATION)
+					newScores[nbEdit][f] = 0.0;
+				else if(nbPrun == 0)
+					newScores[nbEdit][f] = Double.POSITIVE_INFINITY; // never prunes on this graph
+				else
+					newScores[nbEdit][f] = (double) elapsedNanos[nbEdit][f].sum()/nbPrun;
+			}
+		}
+		scores = newScores;
+	}
+
+
+	@Override
+	public String toString(){
+		String s = "";
+		for(int nbEdit=1; nbEdit<nbEvaluation.length; nbEdit++){
+			for(int f=0; f<NB_FILTER; f++){
+				long nbEval = nbEvaluation[nbEdit][f].sum();
+				if(nbEval > 0)
+					s += "nbEdit:"+nbEdit+",filter:"+f+",nbEvaluation:"+nbEval+",nbPruned:"+nbPruned[nbEdit][f].sum()
+						+",avgNanos:"+(elapsedNanos[nbEdit][f].sum()/nbEval)+"\n";
+			}
+		}
+		return(s);
+	}
+
+}
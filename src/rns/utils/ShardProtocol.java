@@ -0,0 +1,145 @@
+package rns.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import myUtils.Clustering;
+
+
+/**
+ * The messages exchanged between the coordinator of a distributed enumeration (see 'EnumerationBFSDistributed') and its shard workers
+ *   (see 'ShardWorker'), over a socket. A message starts with its type (a byte), followed by its content:
+ * <ul>
+ * <li> INIT (coordinator to worker): the shard id, the number of shards, maxNbEdit, the number of threads, isBruteForce,
+ * 		the remaining time in milliseconds (-1 if there is no time limit), then the graph (n and the adjacency matrix). </li>
+ * <li> KNOWN (coordinator to worker): records of the clusterings already discovered, owned by the worker. They are not explored. </li>
+ * <li> CLUSTERINGS (coordinator to worker): records of the clusterings owned by the worker, to be checked and explored if they are new. </li>
+ * <li> STOP (coordinator to worker): the enumeration is over, the worker sends its results and ends. </li>
+ * <li> SOLUTIONS (worker to coordinator): records of the solutions found by the worker, routed by the coordinator to their owner. </li>
+ * <li> DONE (worker to coordinator): the number of received clusterings whose processing is finished,
+ * 		and the number of new solutions accepted by the worker. </li>
+ * <li> RESULTS (worker to coordinator): records of all the new solutions accepted by the worker. </li>
+ * </ul>
+ * A list of records is written as its size followed by the records. A record is the generation of the clustering, the edit distance
+ *   from its parent, its predicted yield (see 'EnumerationBFS.FrontierEntry'), its imbalance and its membership.
+ */
+public class ShardProtocol {
+
+	public static final byte INIT = 1;
+	public static final byte KNOWN = 2;
+	public static final byte CLUSTERINGS = 3;
+	public static final byte STOP = 4;
+	public static final byte SOLUTIONS = 5;
+	public static final byte DONE = 6;
+	public static final byte RESULTS = 7;
+
+
+
+	// A clustering sent between the processes, along with its generation (i.e. its distance to the initial clustering)
+	//	and its yield, predicted from its parent, which orders its explorations in its owner
+	public static class Record {
+		public Clustering c;
+		public int generation;
+		public double yield;
+
+		public Record(Clustering c_, int generation_){
+			this(c_, generation_, 0.0);
+		}
+
+		public Record(Clustering c_, int generation_, double yield_){
+			c = c_;
+			generation = generation_;
+			yield = yield_;
+		}
+	}
+
+
+
+	public static void writeRecord(DataOutputStream out, Record r) throws IOException {
+		out.writeInt(r.generation);
+		out.writeInt(r.c.getNbEditParent());
+		out.writeDouble(r.yield);
+		out.writeDouble(r.c.getImbalance());
+		int[] membership = r.c.membership;
+		for(int i=0; i<membership.length; i++)
+			out.writeInt(membership[i]);
+	}
+
+
+	public static Record readRecord(DataInputStream in, int n) throws IOException {
+		int generation = in.readInt();
+		int nbEditParent = in.readInt();
+		double yield = in.readDouble();
+		double imbalance = in.readDouble();
+		int[] membership = new int[n];
+		for(int i=0; i<n; i++)
+			membership[i] = in.readInt();
+		Clustering c = new Clustering(membership, -1);
+		c.setNbEditParent(nbEditParent);
+		c.setImbalance(imbalance);
+		return(new Record(c, generation, yield));
+	}
+
+
+	public static void writeRecords(DataOutputStream out, List<Record> records) throws IOException {
+		out.writeInt(records.size());
+		for(Record r : records)
+			writeRecord(out, r);
+	}
+
+
+	public static List<Record> readRecords(DataInputStream in, int n) throws IOException {
+		int size = in.readInt();
+		List<Record> records = new ArrayList<Record>(size);
+		for(int i=0; i<size; i++)
+			records.add(readRecord(in, n));
+		return(records);
+	}
+
+
+	/**
+	 * It returns a whole message containing a list of records, so that it can be queued and written later at once.
+	 *
+	 * @param type
+	 * @param records
+	 * @return
+	 */
+	public static byte[] encodeRecords(byte type, List<Record> records){
+		try {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			DataOutputStream out = new DataOutputStream(bytes);
+			out.writeByte(type);
+			writeRecords(out, records);
+			out.flush();
+			return(bytes.toByteArray());
+		} catch (IOException e) { // not thrown by a 'ByteArrayOutputStream'
+			throw new IllegalStateException(e);
+		}
+	}
+
+
+	public static void writeGraph(DataOutputStream out, double[][] adjMat) throws IOException {
+		int n = adjMat.length;
+		out.writeInt(n);
+		for(int i=0; i<n; i++)
+			for(int j=i+1; j<n; j++) // the matrix is symmetric
+				out.writeDouble(adjMat[i][j]);
+	}
+
+
+	public static double[][] readGraph(DataInputStream in) throws IOException {
+		int n = in.readInt();
+		double[][] adjMat = new double[n][n];
+		for(int i=0; i<n; i++)
+			for(int j=i+1; j<n; j++){
+				adjMat[i][j] = in.readDouble();
+				adjMat[j][i] = adjMat[i][j];
+			}
+		return(adjMat);
+	}
+
+}
@@ -0,0 +1,119 @@
+package rns.utils;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+
+
+/**
+ * An executor which starts a new thread for each task, with at most 'maxNbRunning' tasks running at once.
+ *   The waiting tasks are kept in the given queue (e.g. a priority queue), and a dispatcher thread starts them in the order of the queue
+ *   as soon as a running task finishes.
+ *
+ * When the runtime supports virtual threads (Java 21 or later), the tasks run in virtual threads (see 'virtualThreadFactory()'):
+ *   a task costs then only a small object, and a task blocked on a lock or an I/O operation does not hold an operating system thread.
+ *   Otherwise, they run in new platform threads. Since the code is compiled for Java 17, the virtual threads are created by reflection.
+ *   A thread-local cache would be lost at the end of each task, so the objects recycled between the tasks are kept in shared pools
+ *   (e.g. 'MyCGraph.acquire()').
+ *
+ * Alternatively, the tasks can be handed to another executor instead of new threads, e.g. a ForkJoinPool which also runs their subtasks:
+ *   the tasks are still started in the order of the queue, and the pool does not need to run more threads than 'maxNbRunning'.
+ */
+public class ThreadPerTaskExecutor implements Executor {
+
+	private final BlockingQueue<Runnable> queue;
+	private final Semaphore runningPermits;
+	private final Executor runner; // it runs a task once it is started, in a new thread by default
+
+
+	/**
+	 * @param queue: the waiting tasks
+	 * @param maxNbRunning: the maximal number of tasks running at once
+	 * @param useVirtualThreads: if true, the tasks run in virtual threads when they are supported
+	 */
+	public ThreadPerTaskExecutor(BlockingQueue<Runnable> queue, int maxNbRunning, boolean useVirtualThreads){
+		this(queue, maxNbRunning, newThreadRunner(useVirtualThreads));
+	}
+
+
+	/**
+	 * @param queue: the waiting tasks
+	 * @param maxNbRunning: the maximal number of tasks running at once
+	 * @param runner: the executor which runs the started tasks
+	 */
+	public ThreadPerTaskExecutor(BlockingQueue<Runnable> queue, int maxNbRunning, Executor runner){
+		this.queue = queue;
+		runningPermits = new Semaphore(maxNbRunning);
+		this.runner = runner;
+
+		Thread dispatcher = new Thread(this::dispatch, "task-dispatcher");
+		dispatcher.setDaemon(true); // the dispatcher does not prevent the program from ending
+		dispatcher.start();
+	}
+
+
+	@Override
+	public void execute(Runnable task){
+		queue.add(task);
+	}
+
+
+	// It starts the waiting tasks, one at a time, when a running permit is available
+	private void dispatch(){
+		try {
+			while(true){
+				runningPermits.acquire();
+				Runnable task = queue.take();
+				runner.execute(() -> {
+					try {
+						task.run();
+					} finally {
+						runningPermits.release();
+					}
+				});
+			}
+		} catch (InterruptedException e) {
+			// the dispatcher is stopped
+		}
+	}
+
+
+	public BlockingQueue<Runnable> getQueue(){
+		return(queue);
+	}
+
+
+	// It returns an executor which runs each task in a new thread, a virtual one if 'useVirtualThreads' is true and they are supported
+	static Executor newThreadRunner(boolean useVirtualThreads){
+		ThreadFactory factory = useVirtualThreads ? virtualThreadFactory() : null;
+		ThreadFactory threadFactory = (factory != null) ? factory : ThreadPerTaskExecutor::newDaemonThread;
+		return(r -> threadFactory.newThread(r).start());
+	}
+
+
+	public static Thread newDaemonThread(Runnable r){
+		Thread t = new Thread(r);
+		t.setDaemon(true); // the threads do not prevent the program from ending
+		return(t);
+	}
+
+
+	/**
+	 * It returns a factory of virtual threads, i.e. 'Thread.ofVirtual().factory()', or null if the runtime does not support them.
+	 *
+	 * @return
+	 */
+	public static ThreadFactory virtualThreadFactory(){
+		try {
+			Method ofVirtual = Thread.class.getMethod("ofVirtual");
+			Object builder = ofVirtual.invoke(null);
+			Method factory = Class.forName("java.lang.Thread$Builder").getMethod("factory"); // the public interface of the builder
+			return((ThreadFactory) factory.invoke(builder));
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			return(null);
+		}
+	}
+
+}
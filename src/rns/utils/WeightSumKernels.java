@@ -0,0 +1,112 @@
+package rns.utils;
+
+
+/**
+ * Reductions of the rows of the adjacency matrix over the nodes of a cluster. The nodes are grouped by cluster
+ *   in a single array (see 'groupNodesByCluster()'), so that each cluster is a contiguous range of this array.
+ *
+ * The kernels are tight loops on primitive arrays, with a single accumulator per sum: the additions are performed
+ *   in the same order as in a loop on the node ids (ascending inside a cluster), so the results are exactly the same.
+ *   This matters, since the optimal transformations are detected by a delta value equal to 0.0.
+ */
+public class WeightSumKernels {
+
+	/**
+	 * It groups the nodes by cluster, in ascending order inside each cluster (counting sort, in O(n)).
+	 * The nodes of the cluster c (starting from 1) are at the positions 'clusterStarts[c-1]' to 'clusterStarts[c]-1' of the returned array.
+	 * The nodes whose membership is -1 (i.e. removed nodes) are ignored.
+	 *
+	 * @param membership
+	 * @param nbCluster
+	 * @param clusterStarts: an array of size at least nbCluster+1, filled in by the method
+	 * @return the node ids grouped by cluster
+	 */
+	public static int[] groupNodesByCluster(int[] membership, int nbCluster, int[] clusterStarts){
+		for(int c=0; c<=nbCluster; c++)
+			clusterStarts[c] = 0;
+		for(int i=0; i<membership.length; i++)
+			if(membership[i] != -1)
+				clusterStarts[membership[i]]++; // the size of the cluster c is stored at index c
+		for(int c=1; c<=nbCluster; c++)
+			clusterStarts[c] += clusterStarts[c-1]; // now, the end of the cluster c, i.e. the start of the cluster c+1
+
+		int[] nodes = new int[clusterStarts[nbCluster]];
+		int[] next = new int[nbCluster]; // the next free position of each cluster
+		System.arraycopy(clusterStarts, 0, next, 0, nbCluster);
+		for(int i=0; i<membership.length; i++)
+			if(membership[i] != -1)
+				nodes[next[membership[i]-1]++] = i;
+		return(nodes);
+	}
+
+
+	/**
+	 * For each cluster c, it sums the weights of the links from the node 'self' to the nodes of c (except itself): 
+	 *   the positive weights into 'pos[c-1]', all the weights into 'weight[c-1]' and their absolute values into 'abs[c-1]'.
+	 *
+	 * @param row: the row of the node 'self' in the adjacency matrix
+	 * @param self
+	 * @param nodes: see 'groupNodesByCluster()'
+	 * @param clusterStarts: see 'groupNodesByCluster()'
+	 * @param nbCluster
+	 * @param pos
+	 * @param weight
+	 * @param abs
+	 */
+	public static void sumByCluster(double[] row, int self, int[] nodes, int[] clusterStarts, int nbCluster,
+			double[] pos, double[] weight, double[] abs){
+		for(int c=0; c<nbCluster; c++){
+			double p = 0.0, w = 0.0, a = 0.0;
+			for(int k=clusterStarts[c]; k<clusterStarts[c+1]; k++){
+				int j = nodes[k];
+				if(j != self){
+					double x = row[j];
+					if(x>0)
+						p += x;
+					w += x;
+					a += Math.abs(x);
+				}
+			}
+			pos[c] = p;
+			weight[c] = w;
+			abs[c] = a;
+		}
+	}
+
+
+	// It adds to 's' the positive weights row[nodes[k]] with from<=k<to, in this order
+	public static double addPositive(double s, double[] row, int[] nodes, int from, int to){
+		for(int k=from; k<to; k++){
+			double w = row[nodes[k]];
+			if(w>0)
+				s += w;
+		}
+		return(s);
+	}
+
+
+	// It adds to 's' the absolute values of the negative weights row[nodes[k]] with from<=k<to, in this order
+	public static double addNegativeAbs(double s, double[] row, int[] nodes, int from, int to){
+		for(int k=from; k<to; k++){
+			double w = row[nodes[k]];
+			if(w<0)
+				s += -w;
+		}
+		return(s);
+	}
+
+
+	// the first position k in [from,to) such that nodes[k]>nodeId, or 'to' if there is not any (the range is sorted in ascending order)
+	public static int firstGreater(int[] nodes, int from, int to, int nodeId){
+		int lo = from, hi = to;
+		while(lo < hi){
+			int mid = (lo+hi) >>> 1;
+			if(nodes[mid] <= nodeId)
+				lo = mid+1;
+			else
+				hi = mid;
+		}
+		return(lo);
+	}
+
+}
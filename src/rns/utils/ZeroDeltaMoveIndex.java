@@ -0,0 +1,165 @@
+package rns.utils;
+
+
+/**
+ * An index of the single node moves of a clustering, used to discard the nodes which cannot take part in any zero-delta d-edit operation.
+ *
+ * Let cost(u,t) be the imbalance increase when only the node u moves from its cluster A to the cluster t (an existing one or a new one),
+ *   i.e. w(u,A) - w(u,t), where w(u,X) is the sum of the link weights between u and the nodes of X. Since the clustering is optimal,
+ *   every set of moves increases the imbalance or lets it unchanged. For a set S of moving nodes containing u, the imbalance change of S is
+ *   the imbalance change of S without u (non-negative), plus cost(u,t_u), plus a correction for each link between u and another moving node x,
+ *   which is at least -2|w(u,x)|. So, if S does not change the imbalance, we have cost(u,t_u) <= 2*sum_{x in S, x!=u} |w(u,x)|,
+ *   which is at most twice the sum of the d-1 greatest absolute weights incident to u.
+ *
+ * More generally, for a subset P of S, the imbalance change of S is the one of S without P (non-negative), plus the one of P moved alone,
+ *   plus the corrections of the links between P and the other moving nodes. The imbalance change of P is at least the sum of the smallest
+ *   move costs of its nodes minus twice the absolute weights between them, and the corrections are at least minus twice the sum
+ *   of the d-|P| greatest absolute weights incident to each node of P. If this lower bound is positive, no set of d moving nodes
+ *   containing P is a zero-delta operation (see 'canBeCompleted()'). An upper bound is not needed: the imbalance cannot decrease.
+ *
+ * For each node, the index records the smallest cost of its moves and the bound above for each d. The absolute weight bounds depend only on the graph, so they are shared by all the clusterings.
+ */
+public class ZeroDeltaMoveIndex {
+
+	// the tolerance of the comparisons, so that a rounding error does not discard a node taking part in a zero-delta operation
+	public static double EPSILON = 1e-6;
+
+	private static double[][] cachedAdjMat = null;
+	private static double[][] cachedTopAbsWeightSums = null;
+
+	public int n;
+	public double[] minMoveCost; // the smallest imbalance increase of a single move of each node
+	double[][] topAbsWeightSums; // 'topAbsWeightSums[u][j]' is the sum of the j greatest absolute weights incident to u
+	double[][] adjMat;
+
+
+	/**
+	 * @param g: the weight sums of the clustering, filled in for all its nodes
+	 * @param adjMat
+	 * @param maxNbEdit
+	 */
+	public ZeroDeltaMoveIndex(MyCGraph g, double[][] adjMat, int maxNbEdit){
+		this.adjMat = adjMat;
+		n = g.n;
+		topAbsWeightSums = getTopAbsWeightSums(adjMat, maxNbEdit-1);
+
+		int nbCluster = g.c.getNbCluster();
+		int[] membership = g.c.membership;
+		minMoveCost = new double[n];
+		for(int u=0; u<n; u++){
+			int clusterId = membership[u];
+			if(clusterId == -1) // a removed node
+				continue;
+			double[] weightSums = g.weightSumInClusters[u];
+			double own = weightSums[clusterId-1];
+			double min = own; // the move into a new cluster, i.e. w(u,new)=0
+			for(int t=1; t<=nbCluster; t++){
+				if(t != clusterId){
+					double cost = own - weightSums[t-1];
+					if(cost < min)
+						min = cost;
+				}
+			}
+			minMoveCost[u] = min;
+		}
+	}
+
+
+	/**
+	 * It returns false if the node u cannot take part in any zero-delta operation moving 'nbEdit' nodes.
+	 *
+	 * @param u
+	 * @param nbEdit
+	 * @return
+	 */
+	public boolean canTakePart(int u, int nbEdit){
+		return(minMoveCost[u] <= 2*topAbsWeightSums[u][nbEdit-1] + EPSILON);
+	}
+
+
+	/**
+	 * It returns false if a node of 'nodeIds' cannot take part in a zero-delta operation moving exactly the nodes 'nodeIds',
+	 *   i.e. if its smallest move cost exceeds twice the sum of its absolute weights with the other moving nodes.
+	 *
+	 * @param nodeIds
+	 * @param size: the number of nodes in 'nodeIds'
+	 * @return
+	 */
+	public boolean isCompensable(int[] nodeIds, int size){
+		for(int i=0; i<size; i++){
+			int u = nodeIds[i];
+			double[] row = adjMat[u];
+			double s = 0.0;
+			for(int j=0; j<size; j++)
+				if(j != i)
+					s += Math.abs(row[nodeIds[j]]);
+			if(minMoveCost[u] > 2*s + EPSILON)
+				return(false);
+		}
+		return(true);
+	}
+
+
+	/**
+	 * It returns false if no set of 'nbEdit' moving nodes containing the nodes 'nodeIds' can be a zero-delta operation,
+	 *   i.e. if the lower bound of its imbalance change is positive (see the class description).
+	 *
+	 * @param nodeIds
+	 * @param size: the number of nodes in 'nodeIds', at most 'nbEdit'
+	 * @param nbEdit
+	 * @return
+	 */
+	public boolean canBeCompleted(int[] nodeIds, int size, int nbEdit){
+		double lowerBound = 0.0;
+		for(int i=0; i<size; i++){
+			int u = nodeIds[i];
+			lowerBound += minMoveCost[u] - 2*topAbsWeightSums[u][nbEdit-size];
+			double[] row = adjMat[u];
+			for(int j=0; j<i; j++)
+				lowerBound -= 2*Math.abs(row[nodeIds[j]]);
+		}
+		return(lowerBound <= EPSILON);
+	}
+
+
+	/**
+	 * It returns, for each node u and 0<=j<=maxK, the sum of the j greatest absolute weights incident to u.
+	 *   The table of the last graph is kept, since it does not depend on the clustering.
+	 *
+	 * @param adjMat
+	 * @param maxK
+	 * @return
+	 */
+	public static synchronized double[][] getTopAbsWeightSums(double[][] adjMat, int maxK){
+		if(cachedAdjMat != adjMat || cachedTopAbsWeightSums[0].length <= maxK){
+			cachedTopAbsWeightSums = computeTopAbsWeightSums(adjMat, maxK);
+			cachedAdjMat = adjMat;
+		}
+		return(cachedTopAbsWeightSums);
+	}
+
+
+	static double[][] computeTopAbsWeightSums(double[][] adjMat, int maxK){
+		int n = adjMat.length;
+		double[][] sums = new double[n][maxK+1];
+		double[] top = new double[maxK]; // the greatest absolute weights, in descending order
+		for(int u=0; u<n && maxK>0; u++){
+			int size = 0;
+			for(int v=0; v<n; v++){
+				double a = Math.abs(adjMat[u][v]);
+				if(v == u || a == 0.0 || (size == maxK && a <= top[size-1]))
+					continue;
+				int j = (size < maxK) ? size++ : size-1;
+				while(j>0 && top[j-1] < a){ // insertion into the sorted array
+					top[j] = top[j-1];
+					j--;
+				}
+				top[j] = a;
+			}
+			for(int j=1; j<=maxK; j++)
+				sums[u][j] = sums[u][j-1] + (j<=size ? top[j-1] : 0.0);
+		}
+		return(sums);
+	}
+
+}